@@ -0,0 +1,46 @@
+package eu.esens.espdvcd.designer.serverless.benchmark;
+
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
+import eu.esens.espdvcd.designer.service.SelfContainedCriteriaService;
+import eu.esens.espdvcd.designer.util.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Serialization of the criteria lists the criteria function returns. */
+@State(Scope.Benchmark)
+public class CriteriaSerializationBenchmark {
+
+  @Param({"V1_REGULATED", "V2_REGULATED", "V2_SELFCONTAINED"})
+  public String criteria;
+
+  @Param({"CONTRACTING_AUTHORITY", "CONTRACTING_ENTITY"})
+  public ContractingOperatorEnum contractingOperator;
+
+  private CriteriaService service;
+
+  @Setup
+  public void setUp() throws Exception {
+    switch (criteria) {
+      case "V1_REGULATED":
+        service = RegulatedCriteriaService.getV1Instance();
+        break;
+      case "V2_REGULATED":
+        service = RegulatedCriteriaService.getV2Instance();
+        break;
+      default:
+        service = SelfContainedCriteriaService.getInstance();
+    }
+    // Loading the criteria is a one-off cost per instance, not part of each serialization
+    service.getCriteria(contractingOperator);
+  }
+
+  @Benchmark
+  public String toJson() throws Exception {
+    return JsonUtil.toJson(service.getCriteria(contractingOperator));
+  }
+}
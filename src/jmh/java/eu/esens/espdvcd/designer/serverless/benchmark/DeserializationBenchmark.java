@@ -0,0 +1,61 @@
+package eu.esens.espdvcd.designer.serverless.benchmark;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import eu.esens.espdvcd.designer.deserialiser.RequirementDeserialiser;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.model.ESPDRequestImpl;
+import eu.esens.espdvcd.model.ESPDResponseImpl;
+import eu.esens.espdvcd.model.requirement.Requirement;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** Jackson deserialization of the JSON body the export function receives. */
+@State(Scope.Benchmark)
+public class DeserializationBenchmark {
+
+  @Param({"V1_REQUEST", "V1_RESPONSE", "V2_REQUEST", "V2_RESPONSE"})
+  public Fixture fixture;
+
+  @Param({"false", "true"})
+  public boolean large;
+
+  private byte[] json;
+  private Class<?> type;
+
+  @Setup
+  public void setUp() throws Exception {
+    json = fixture.toJson(fixture.load(large));
+    type = fixture.isResponse() ? ESPDResponseImpl.class : ESPDRequestImpl.class;
+  }
+
+  /**
+   * Builds a mapper per call, as APIUtils.getJacksonMapper did before the shared readers, so its
+   * serializer caches start empty every time.
+   */
+  @Benchmark
+  public Object mapperAndDeserialize() throws Exception {
+    return new ObjectMapper()
+        .registerModule(new JavaTimeModule())
+        .registerModule(
+            new SimpleModule()
+                .addDeserializer(
+                    Requirement.class, new RequirementDeserialiser(fixture.getVersion())))
+        .disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE)
+        .enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT)
+        .enable(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT)
+        .readValue(json, type);
+  }
+
+  @Benchmark
+  public Object sharedReader() throws Exception {
+    return fixture.isResponse()
+        ? JacksonRegistry.getResponseReader(fixture.getVersion()).readValue(json)
+        : JacksonRegistry.getRequestReader(fixture.getVersion()).readValue(json);
+  }
+}
@@ -0,0 +1,48 @@
+package eu.esens.espdvcd.designer.serverless.benchmark;
+
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.service.ExportESPDService;
+import eu.esens.espdvcd.designer.service.ExportESPDV2Service;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.model.ESPDRequest;
+import eu.esens.espdvcd.model.ESPDResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.InputStream;
+
+/** Rendering of a V2 document by {@link ExportESPDV2Service}, for every export type. */
+@State(Scope.Benchmark)
+public class ExportBenchmark {
+
+  @Param({"V2_REQUEST", "V2_RESPONSE"})
+  public Fixture fixture;
+
+  @Param({"false", "true"})
+  public boolean large;
+
+  @Param({"XML", "PDF", "HTML"})
+  public ExportType exportType;
+
+  private ESPDRequest document;
+
+  @Setup
+  public void setUp() throws Exception {
+    document = fixture.load(large);
+  }
+
+  @Benchmark
+  public byte[] export() throws Exception {
+    ExportESPDService service = ExportESPDV2Service.getInstance();
+    try (InputStream in =
+        fixture.isResponse()
+            ? service.exportESPDResponseAs(
+                (ESPDResponse) document, EULanguageCodeEnum.EN, exportType)
+            : service.exportESPDRequestAs(document, EULanguageCodeEnum.EN, exportType)) {
+      return in.readAllBytes();
+    }
+  }
+}
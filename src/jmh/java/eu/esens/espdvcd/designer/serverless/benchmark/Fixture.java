@@ -0,0 +1,107 @@
+package eu.esens.espdvcd.designer.serverless.benchmark;
+
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.designer.service.ExportESPDService;
+import eu.esens.espdvcd.designer.service.ExportESPDV1Service;
+import eu.esens.espdvcd.designer.service.ExportESPDV2Service;
+import eu.esens.espdvcd.designer.service.ImportESPDRequestService;
+import eu.esens.espdvcd.designer.service.ImportESPDResponseService;
+import eu.esens.espdvcd.designer.service.ImportESPDService;
+import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.model.ESPDRequest;
+import eu.esens.espdvcd.model.ESPDResponse;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The bundled ESPD artefacts the benchmarks run on. The small variant is the bundled XML as it
+ * is; the large variant additionally carries every regulated criterion of its version, which is
+ * the biggest document the designer produces.
+ */
+public enum Fixture {
+  V1_REQUEST(EDMVersion.V1, false, "/fixtures/espd-request-v1.xml"),
+  V1_RESPONSE(EDMVersion.V1, true, "/fixtures/espd-response-v1.xml"),
+  // Shared with the warmup, so it ships with the main resources
+  V2_REQUEST(EDMVersion.V2, false, "/warmup/espd-request-v2.xml"),
+  V2_RESPONSE(EDMVersion.V2, true, "/fixtures/espd-response-v2.xml");
+
+  private final EDMVersion version;
+  private final boolean isResponse;
+  private final String resource;
+
+  Fixture(EDMVersion version, boolean isResponse, String resource) {
+    this.version = version;
+    this.isResponse = isResponse;
+    this.resource = resource;
+  }
+
+  public EDMVersion getVersion() {
+    return version;
+  }
+
+  public boolean isResponse() {
+    return isResponse;
+  }
+
+  public ImportESPDService importService() {
+    return isResponse
+        ? ImportESPDResponseService.getInstance()
+        : ImportESPDRequestService.getInstance();
+  }
+
+  public ExportESPDService exportService() {
+    return version == EDMVersion.V1
+        ? ExportESPDV1Service.getInstance()
+        : ExportESPDV2Service.getInstance();
+  }
+
+  /** Imports the fixture into the model, adding every regulated criterion when large. */
+  public ESPDRequest load(boolean large) throws Exception {
+    Path xml = Files.createTempFile("espd-fixture", ".xml");
+    try (InputStream in = Fixture.class.getResourceAsStream(resource)) {
+      Files.copy(in, xml, StandardCopyOption.REPLACE_EXISTING);
+      ESPDRequest document =
+          (ESPDRequest)
+              importService()
+                  .importESPDFile(xml.toFile(), ContractingOperatorEnum.CONTRACTING_AUTHORITY);
+      if (large) {
+        CriteriaService criteria =
+            version == EDMVersion.V1
+                ? RegulatedCriteriaService.getV1Instance()
+                : RegulatedCriteriaService.getV2Instance();
+        document.setFullCriterionList(
+            criteria.getCriteria(ContractingOperatorEnum.CONTRACTING_AUTHORITY));
+      }
+      return document;
+    } finally {
+      Files.deleteIfExists(xml);
+    }
+  }
+
+  /** The fixture as the JSON body the export function receives. */
+  public byte[] toJson(ESPDRequest document) throws Exception {
+    return JacksonRegistry.getMapper(version).writeValueAsBytes(document);
+  }
+
+  /** The fixture as the XML file the import function receives, written to a temp file. */
+  public Path toXmlFile(ESPDRequest document) throws Exception {
+    ExportESPDService service = exportService();
+    Path xml = Files.createTempFile("espd-fixture", ".xml");
+    try (InputStream in =
+        isResponse
+            ? service.exportESPDResponseAs(
+                (ESPDResponse) document, EULanguageCodeEnum.EN, ExportType.XML)
+            : service.exportESPDRequestAs(document, EULanguageCodeEnum.EN, ExportType.XML)) {
+      Files.copy(in, xml, StandardCopyOption.REPLACE_EXISTING);
+    }
+    return xml;
+  }
+}
@@ -0,0 +1,45 @@
+package eu.esens.espdvcd.designer.serverless.benchmark;
+
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.service.ImportESPDService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/** Validation and import of an uploaded XML file by the import services. */
+@State(Scope.Benchmark)
+public class ImportBenchmark {
+
+  @Param({"V1_REQUEST", "V1_RESPONSE", "V2_REQUEST", "V2_RESPONSE"})
+  public Fixture fixture;
+
+  @Param({"false", "true"})
+  public boolean large;
+
+  private Path xml;
+  private ImportESPDService service;
+
+  @Setup
+  public void setUp() throws Exception {
+    xml = fixture.toXmlFile(fixture.load(large));
+    service = fixture.importService();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(xml);
+  }
+
+  @Benchmark
+  public Object importESPDFile() throws Exception {
+    File file = xml.toFile();
+    return service.importESPDFile(file, ContractingOperatorEnum.CONTRACTING_AUTHORITY);
+  }
+}
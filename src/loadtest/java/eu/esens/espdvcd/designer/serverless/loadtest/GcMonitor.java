@@ -0,0 +1,101 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects GC pauses from the collectors' notifications and samples the heap to find its high
+ * water mark while a load test runs.
+ */
+final class GcMonitor implements NotificationListener, AutoCloseable {
+
+  private static final long SAMPLE_INTERVAL_MILLIS = 50;
+
+  private final List<NotificationEmitter> emitters = new ArrayList<>();
+  private final AtomicLong collections = new AtomicLong();
+  private final AtomicLong totalPauseMillis = new AtomicLong();
+  private final AtomicLong maxPauseMillis = new AtomicLong();
+  private final AtomicLong heapHighWater = new AtomicLong();
+  private final Thread sampler;
+  private volatile boolean running = true;
+
+  GcMonitor() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if (collector instanceof NotificationEmitter) {
+        NotificationEmitter emitter = (NotificationEmitter) collector;
+        emitter.addNotificationListener(this, null, null);
+        emitters.add(emitter);
+      }
+    }
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    sampler =
+        new Thread(
+            () -> {
+              while (running) {
+                heapHighWater.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+                try {
+                  Thread.sleep(SAMPLE_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                  return;
+                }
+              }
+            },
+            "loadtest-heap-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+  }
+
+  @Override
+  public void handleNotification(Notification notification, Object handback) {
+    if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(
+        notification.getType())) return;
+    GarbageCollectionNotificationInfo info =
+        GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+    // Concurrent cycles of G1/ZGC are reported too, but they do not stop the application
+    if (info.getGcAction().contains("concurrent") || info.getGcCause().contains("Concurrent"))
+      return;
+    long pause = info.getGcInfo().getDuration();
+    collections.incrementAndGet();
+    totalPauseMillis.addAndGet(pause);
+    maxPauseMillis.accumulateAndGet(pause, Math::max);
+  }
+
+  long getCollections() {
+    return collections.get();
+  }
+
+  long getTotalPauseMillis() {
+    return totalPauseMillis.get();
+  }
+
+  long getMaxPauseMillis() {
+    return maxPauseMillis.get();
+  }
+
+  long getHeapHighWater() {
+    return heapHighWater.get();
+  }
+
+  @Override
+  public void close() {
+    running = false;
+    sampler.interrupt();
+    for (NotificationEmitter emitter : emitters) {
+      try {
+        emitter.removeNotificationListener(this);
+      } catch (Exception ignored) {
+        // the JVM is about to exit anyway
+      }
+    }
+  }
+}
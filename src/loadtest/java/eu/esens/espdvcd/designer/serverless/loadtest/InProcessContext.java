@@ -0,0 +1,34 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.microsoft.azure.functions.ExecutionContext;
+
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/** The execution context of an in-process invocation. */
+final class InProcessContext implements ExecutionContext {
+
+  private static final Logger LOGGER = Logger.getLogger("loadtest.functions");
+
+  private final String functionName;
+  private final String invocationId = UUID.randomUUID().toString();
+
+  InProcessContext(String functionName) {
+    this.functionName = functionName;
+  }
+
+  @Override
+  public Logger getLogger() {
+    return LOGGER;
+  }
+
+  @Override
+  public String getInvocationId() {
+    return invocationId;
+  }
+
+  @Override
+  public String getFunctionName() {
+    return functionName;
+  }
+}
@@ -0,0 +1,90 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.HttpStatusType;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An HTTP request handed to a function's {@code run} method in-process. Header names are
+ * lowercased, as the Java worker does.
+ */
+final class InProcessRequest<T> implements HttpRequestMessage<Optional<T>> {
+
+  private final HttpMethod method;
+  private final URI uri;
+  private final Map<String, String> headers = new HashMap<>();
+  private final Map<String, String> queryParameters = new HashMap<>();
+  private final T body;
+
+  private InProcessRequest(HttpMethod method, String path, T body) {
+    this.method = method;
+    this.uri = URI.create("http://localhost/api/" + path);
+    this.body = body;
+  }
+
+  static InProcessRequest<String> get(String path) {
+    return new InProcessRequest<>(HttpMethod.GET, path, null);
+  }
+
+  static InProcessRequest<byte[]> post(String path, String contentType, byte[] body) {
+    return new InProcessRequest<>(HttpMethod.POST, path, body).header("Content-Type", contentType);
+  }
+
+  static InProcessRequest<String> post(String path, String contentType, String body) {
+    return new InProcessRequest<>(HttpMethod.POST, path, body).header("Content-Type", contentType);
+  }
+
+  InProcessRequest<T> header(String name, String value) {
+    headers.put(name.toLowerCase(Locale.ROOT), value);
+    return this;
+  }
+
+  InProcessRequest<T> query(String name, String value) {
+    queryParameters.put(name, value);
+    return this;
+  }
+
+  @Override
+  public URI getUri() {
+    return uri;
+  }
+
+  @Override
+  public HttpMethod getHttpMethod() {
+    return method;
+  }
+
+  @Override
+  public Map<String, String> getHeaders() {
+    return Collections.unmodifiableMap(headers);
+  }
+
+  @Override
+  public Map<String, String> getQueryParameters() {
+    return Collections.unmodifiableMap(queryParameters);
+  }
+
+  @Override
+  public Optional<T> getBody() {
+    return Optional.ofNullable(body);
+  }
+
+  @Override
+  public HttpResponseMessage.Builder createResponseBuilder(HttpStatus status) {
+    return new InProcessResponse.Builder(status);
+  }
+
+  @Override
+  public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType status) {
+    return new InProcessResponse.Builder(status);
+  }
+}
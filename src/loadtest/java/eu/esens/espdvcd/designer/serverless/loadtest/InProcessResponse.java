@@ -0,0 +1,78 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatusType;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/** The response a function built in-process. */
+final class InProcessResponse implements HttpResponseMessage {
+
+  private final HttpStatusType status;
+  private final Map<String, String> headers;
+  private final Object body;
+
+  private InProcessResponse(HttpStatusType status, Map<String, String> headers, Object body) {
+    this.status = status;
+    this.headers = headers;
+    this.body = body;
+  }
+
+  @Override
+  public HttpStatusType getStatus() {
+    return status;
+  }
+
+  @Override
+  public String getHeader(String key) {
+    return headers.get(key.toLowerCase(Locale.ROOT));
+  }
+
+  @Override
+  public Object getBody() {
+    return body;
+  }
+
+  /** The size of the body as the worker would send it. */
+  long getBodyLength() {
+    if (body == null) return 0;
+    if (body instanceof byte[]) return ((byte[]) body).length;
+    return body.toString().getBytes(StandardCharsets.UTF_8).length;
+  }
+
+  static final class Builder implements HttpResponseMessage.Builder {
+    private HttpStatusType status;
+    private final Map<String, String> headers = new HashMap<>();
+    private Object body;
+
+    Builder(HttpStatusType status) {
+      this.status = status;
+    }
+
+    @Override
+    public HttpResponseMessage.Builder status(HttpStatusType status) {
+      this.status = status;
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage.Builder header(String key, String value) {
+      headers.put(key.toLowerCase(Locale.ROOT), value);
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage.Builder body(Object body) {
+      this.body = body;
+      return this;
+    }
+
+    @Override
+    public HttpResponseMessage build() {
+      return new InProcessResponse(status, headers, body);
+    }
+  }
+}
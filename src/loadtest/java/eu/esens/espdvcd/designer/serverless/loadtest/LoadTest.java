@@ -0,0 +1,155 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.microsoft.azure.functions.HttpResponseMessage;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Drives the functions in-process with a closed-loop workload: each virtual user calls the next
+ * function as soon as the previous call returned. Reports throughput and latency percentiles per
+ * function, status codes, GC pauses and the heap high water mark.
+ *
+ * <p>Usage: {@code ./gradlew loadTest --args="--workload=mixed --users=32 --duration=60
+ * --warmup=15"}
+ */
+public final class LoadTest {
+
+  private final Workload workload;
+  private final int users;
+  private final long warmupSeconds;
+  private final long durationSeconds;
+  private final Map<String, Recorder> latencies = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+  private final LongAdder responseBytes = new LongAdder();
+  private volatile boolean measuring;
+  private volatile boolean stopped;
+
+  private LoadTest(Workload workload, int users, long warmupSeconds, long durationSeconds) {
+    this.workload = workload;
+    this.users = users;
+    this.warmupSeconds = warmupSeconds;
+    this.durationSeconds = durationSeconds;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new TreeMap<>();
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("="))
+        throw new IllegalArgumentException("Arguments are --name=value pairs, got " + arg);
+      options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+    }
+    LoadTest loadTest =
+        new LoadTest(
+            Workload.forName(options.getOrDefault("workload", "mixed")),
+            Integer.parseInt(options.getOrDefault("users", "16")),
+            Long.parseLong(options.getOrDefault("warmup", "15")),
+            Long.parseLong(options.getOrDefault("duration", "60")));
+    loadTest.run(options.getOrDefault("workload", "mixed"));
+    System.exit(0);
+  }
+
+  private void run(String workloadName) throws Exception {
+    System.out.printf(
+        "Workload %s, %d users, %ds warmup, %ds measured%n",
+        workloadName, users, warmupSeconds, durationSeconds);
+    workload.setUp();
+
+    CountDownLatch done = new CountDownLatch(users);
+    for (int i = 0; i < users; i++) {
+      long seed = i;
+      Thread user = new Thread(() -> runUser(new Random(seed), done), "loadtest-user-" + i);
+      user.setDaemon(true);
+      user.start();
+    }
+
+    TimeUnit.SECONDS.sleep(warmupSeconds);
+    System.gc();
+    try (GcMonitor gc = new GcMonitor()) {
+      measuring = true;
+      long start = System.nanoTime();
+      TimeUnit.SECONDS.sleep(durationSeconds);
+      measuring = false;
+      long elapsed = System.nanoTime() - start;
+      stopped = true;
+      done.await(30, TimeUnit.SECONDS);
+      report(elapsed, gc);
+    }
+  }
+
+  private void runUser(Random random, CountDownLatch done) {
+    try {
+      while (!stopped) {
+        Workload.Call call = workload.next(random);
+        long start = System.nanoTime();
+        String outcome;
+        try {
+          HttpResponseMessage response = call.invocation.get();
+          outcome = String.valueOf(response.getStatusCode());
+          if (measuring && response instanceof InProcessResponse)
+            responseBytes.add(((InProcessResponse) response).getBodyLength());
+        } catch (RuntimeException | Error e) {
+          outcome = e.getClass().getSimpleName();
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        if (measuring) {
+          latencies.computeIfAbsent(call.name, name -> new Recorder(3)).recordValue(micros);
+          outcomes.computeIfAbsent(call.name + " " + outcome, key -> new LongAdder()).increment();
+        }
+      }
+    } finally {
+      done.countDown();
+    }
+  }
+
+  private void report(long elapsedNanos, GcMonitor gc) {
+    double seconds = elapsedNanos / 1e9;
+    Histogram all = new Histogram(3);
+    System.out.printf(
+        "%n%-32s %9s %9s %9s %9s %9s %9s %9s%n",
+        "function", "calls", "calls/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+    for (Map.Entry<String, Recorder> entry : new TreeMap<>(latencies).entrySet()) {
+      Histogram histogram = entry.getValue().getIntervalHistogram();
+      all.add(histogram);
+      printRow(entry.getKey(), histogram, seconds);
+    }
+    printRow("all", all, seconds);
+
+    System.out.printf("%nOutcomes%n");
+    new TreeMap<>(outcomes)
+        .forEach((key, count) -> System.out.printf("  %-40s %d%n", key, count.sum()));
+
+    System.out.printf(
+        "%nResponse bytes   %.1f MB (%.1f MB/s)%n",
+        responseBytes.sum() / 1048576.0, responseBytes.sum() / 1048576.0 / seconds);
+    System.out.printf(
+        "GC pauses        %d, total %d ms (%.2f%% of wall time), max %d ms%n",
+        gc.getCollections(),
+        gc.getTotalPauseMillis(),
+        gc.getTotalPauseMillis() / 10.0 / seconds,
+        gc.getMaxPauseMillis());
+    System.out.printf(
+        "Heap high water  %.1f MB of %.1f MB max%n",
+        gc.getHeapHighWater() / 1048576.0, Runtime.getRuntime().maxMemory() / 1048576.0);
+  }
+
+  private static void printRow(String name, Histogram histogram, double seconds) {
+    System.out.printf(
+        "%-32s %9d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+        name,
+        histogram.getTotalCount(),
+        histogram.getTotalCount() / seconds,
+        histogram.getValueAtPercentile(50) / 1000.0,
+        histogram.getValueAtPercentile(90) / 1000.0,
+        histogram.getValueAtPercentile(99) / 1000.0,
+        histogram.getValueAtPercentile(99.9) / 1000.0,
+        histogram.getMaxValue() / 1000.0);
+  }
+}
@@ -0,0 +1,477 @@
+package eu.esens.espdvcd.designer.serverless.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.codelists.ShowAvailableCodelistsFunction;
+import eu.esens.espdvcd.designer.serverless.codelists.ShowCodelistFunction;
+import eu.esens.espdvcd.designer.serverless.codelists.ShowTranslatedCodelistFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.CriteriaFiltersFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.CriteriaFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.CriteriaSearchFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.ECertisBatchCriteriaInfoFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.ECertisCriteriaInfoFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.FilteredCriteriaFunction;
+import eu.esens.espdvcd.designer.serverless.criteria.TranslatedECertisCriteriaInfoFunction;
+import eu.esens.espdvcd.designer.serverless.export.BatchExportESPDFunction;
+import eu.esens.espdvcd.designer.serverless.export.ExportESPDFunction;
+import eu.esens.espdvcd.designer.serverless.imp.BulkImportESPDFunction;
+import eu.esens.espdvcd.designer.serverless.imp.ImportESPDFunction;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.MetricsFunction;
+import eu.esens.espdvcd.designer.service.ImportESPDRequestService;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * A mix of function calls a virtual user keeps issuing. Workloads resolve everything they need
+ * (filters, codelist names, fixture bodies) in {@link #setUp()}, so the measured loop only calls
+ * the functions.
+ */
+abstract class Workload {
+
+  /** The sample request the warmup imports, from the main resources. */
+  private static final String REQUEST_FIXTURE = "/warmup/espd-request-v2.xml";
+  private static final String[] LANGUAGES = {"en", "el", "fr", "de", "it", "es"};
+  private static final String[] EXPORT_TYPES = {"xml", "pdf", "html"};
+  private static final String[] EXCLUSION_CRITERIA = {
+    "005eb9ed-1347-4ca3-bb29-9bc0db64e1ab",
+    "c27b7c4e-c837-4529-b867-ed55ce639db5",
+    "297d2323-3ede-424e-94bc-a91561e6f320",
+    "d486fb70-86b3-4e75-97f2-0d71b5697c7d"
+  };
+  private static final String[] COUNTRIES = {"EL", "FR", "DE", "IT", "ES", "BE", "NL", "PT"};
+  private static final String[] SEARCH_QUERIES = {
+    "bankrupt", "corruption", "fraud", "tax", "insolv", "turnover", "professional misconduct"
+  };
+  private static final int BULK_FILES = 8;
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  static Workload forName(String name) {
+    switch (name) {
+      case "criteria":
+        return new CriteriaBrowsing();
+      case "import":
+        return new ImportBurst();
+      case "export":
+        return new ExportBurst();
+      case "ecertis":
+        return new EvidenceLookups();
+      case "batch-export":
+        return new BatchExports();
+      case "bulk-import":
+        return new BulkImports();
+      case "metrics":
+        return new MetricsScrapes();
+      case "mixed":
+        return new Mixed(
+            new CriteriaBrowsing(),
+            new ImportBurst(),
+            new ExportBurst(),
+            new EvidenceLookups(),
+            new BatchExports(),
+            new BulkImports(),
+            new MetricsScrapes());
+      default:
+        throw new IllegalArgumentException(
+            "Unknown workload "
+                + name
+                + "; use criteria, import, export, ecertis, batch-export, bulk-import, metrics"
+                + " or mixed.");
+    }
+  }
+
+  /** Prepares the workload; runs once before any virtual user starts. */
+  abstract void setUp() throws Exception;
+
+  /** Picks the next call of a virtual user. */
+  abstract Call next(Random random);
+
+  /** A named function call. */
+  static final class Call {
+    final String name;
+    final Supplier<HttpResponseMessage> invocation;
+
+    Call(String name, Supplier<HttpResponseMessage> invocation) {
+      this.name = name;
+      this.invocation = invocation;
+    }
+  }
+
+  /** Browsing criteria, filters and codelists, as the designer UI does on every page. */
+  static final class CriteriaBrowsing extends Workload {
+    private final CriteriaFunction criteria = new CriteriaFunction();
+    private final FilteredCriteriaFunction filteredCriteria = new FilteredCriteriaFunction();
+    private final CriteriaFiltersFunction filters = new CriteriaFiltersFunction();
+    private final ShowAvailableCodelistsFunction codelists = new ShowAvailableCodelistsFunction();
+    private final ShowCodelistFunction codelist = new ShowCodelistFunction();
+    private final ShowTranslatedCodelistFunction translatedCodelist =
+        new ShowTranslatedCodelistFunction();
+    private final CriteriaSearchFunction search = new CriteriaSearchFunction();
+    private final List<String> filterNames = new ArrayList<>();
+    private final List<String> codelistNames = new ArrayList<>();
+
+    @Override
+    void setUp() throws Exception {
+      HttpResponseMessage response =
+          filters.run(
+              InProcessRequest.get("v2/regulated/criteria/getFilters"),
+              "v2",
+              "regulated",
+              new InProcessContext("CriteriaFiltersFunction"));
+      collectText(bodyAsJson(response), filterNames);
+      response =
+          codelists.run(
+              InProcessRequest.get("v2/codelists"),
+              "v2",
+              new InProcessContext("ShowAvailableCodelistsFunction"));
+      collectText(bodyAsJson(response), codelistNames);
+    }
+
+    @Override
+    Call next(Random random) {
+      int pick = random.nextInt(11);
+      String operator = ContractingOperatorEnum.values()[random.nextInt(2)].name();
+      if (pick == 10) {
+        String query = SEARCH_QUERIES[random.nextInt(SEARCH_QUERIES.length)];
+        String lang = LANGUAGES[random.nextInt(LANGUAGES.length)];
+        return new Call(
+            "CriteriaSearchFunction",
+            () ->
+                search.run(
+                    InProcessRequest.get("v2/regulated/criteria/search")
+                        .query("q", query)
+                        .query("lang", lang)
+                        .query("contractingOperator", operator),
+                    "v2",
+                    "regulated",
+                    new InProcessContext("CriteriaSearchFunction")));
+      }
+      if (pick < 3) {
+        return new Call(
+            "CriteriaFunction",
+            () ->
+                criteria.run(
+                    InProcessRequest.get("v2/regulated/criteria")
+                        .query("contractingOperator", operator)
+                        .header("Accept-Encoding", "gzip, br"),
+                    "v2",
+                    "regulated",
+                    new InProcessContext("CriteriaFunction")));
+      }
+      if (pick < 6 && !filterNames.isEmpty()) {
+        String filter = filterNames.get(random.nextInt(filterNames.size()));
+        return new Call(
+            "FilteredCriteriaFunction",
+            () ->
+                filteredCriteria.run(
+                    InProcessRequest.get("v2/regulated/criteria/" + filter)
+                        .query("contractingOperator", operator)
+                        .header("Accept-Encoding", "gzip, br"),
+                    "v2",
+                    "regulated",
+                    filter,
+                    new InProcessContext("FilteredCriteriaFunction")));
+      }
+      if (pick < 7 || codelistNames.isEmpty()) {
+        return new Call(
+            "CriteriaFiltersFunction",
+            () ->
+                filters.run(
+                    InProcessRequest.get("v2/regulated/criteria/getFilters"),
+                    "v2",
+                    "regulated",
+                    new InProcessContext("CriteriaFiltersFunction")));
+      }
+      String name = codelistNames.get(random.nextInt(codelistNames.size()));
+      if (pick < 8) {
+        return new Call(
+            "ShowCodelistFunction",
+            () ->
+                codelist.run(
+                    InProcessRequest.get("v2/codelists/" + name),
+                    "v2",
+                    name,
+                    new InProcessContext("ShowCodelistFunction")));
+      }
+      String lang = LANGUAGES[random.nextInt(LANGUAGES.length)];
+      return new Call(
+          "ShowTranslatedCodelistFunction",
+          () ->
+              translatedCodelist.run(
+                  InProcessRequest.get("v2/codelists/" + name + "/lang/" + lang),
+                  "v2",
+                  name,
+                  lang,
+                  new InProcessContext("ShowTranslatedCodelistFunction")));
+    }
+  }
+
+  /** Uploads of the bundled ESPD request XML, as when many operators open a tender at once. */
+  static final class ImportBurst extends Workload {
+    private final ImportESPDFunction function = new ImportESPDFunction();
+    private byte[] xml;
+
+    @Override
+    void setUp() throws Exception {
+      xml = requestXml();
+    }
+
+    @Override
+    Call next(Random random) {
+      return new Call(
+          "ImportESPDFunction",
+          () ->
+              function.run(
+                  InProcessRequest.post("importESPD/request", "application/xml", xml),
+                  "request",
+                  new InProcessContext("ImportESPDFunction")));
+    }
+  }
+
+  /** Exports of the bundled ESPD request in random languages and formats. */
+  static final class ExportBurst extends Workload {
+    private final ExportESPDFunction function = new ExportESPDFunction();
+    private byte[] json;
+
+    @Override
+    void setUp() throws Exception {
+      json = requestJson();
+    }
+
+    @Override
+    Call next(Random random) {
+      String exportType = EXPORT_TYPES[random.nextInt(EXPORT_TYPES.length)];
+      String lang = LANGUAGES[random.nextInt(LANGUAGES.length)];
+      return new Call(
+          "ExportESPDFunction",
+          () ->
+              function.run(
+                  InProcessRequest.post(
+                          "v2/espd/request/" + exportType, "application/json", json)
+                      .query("language", lang),
+                  "v2",
+                  "request",
+                  exportType,
+                  new InProcessContext("ExportESPDFunction")));
+    }
+  }
+
+  /**
+   * eCertis evidence lookups of exclusion criteria per country: single criteria, translated ones
+   * and batches. Run it with {@code ESPD_ECERTIS_SOURCE=standin} to exercise the evidence cache
+   * against a simulated eCertis.
+   */
+  static final class EvidenceLookups extends Workload {
+    private final ECertisCriteriaInfoFunction function = new ECertisCriteriaInfoFunction();
+    private final TranslatedECertisCriteriaInfoFunction translated =
+        new TranslatedECertisCriteriaInfoFunction();
+    private final ECertisBatchCriteriaInfoFunction batch = new ECertisBatchCriteriaInfoFunction();
+    private String batchBody;
+
+    @Override
+    void setUp() throws Exception {
+      batchBody = MAPPER.writeValueAsString(EXCLUSION_CRITERIA);
+    }
+
+    @Override
+    Call next(Random random) {
+      int pick = random.nextInt(4);
+      String criterionID = EXCLUSION_CRITERIA[random.nextInt(EXCLUSION_CRITERIA.length)];
+      String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
+      String lang = LANGUAGES[random.nextInt(LANGUAGES.length)];
+      if (pick == 0) {
+        return new Call(
+            "ECertisBatchCriteriaInfoFunction",
+            () ->
+                batch.run(
+                    InProcessRequest.post(
+                            "v2/regulated/criteria/eCertisData/country/" + country,
+                            "application/json",
+                            batchBody)
+                        .query("lang", lang),
+                    country,
+                    new InProcessContext("ECertisBatchCriteriaInfoFunction")));
+      }
+      if (pick == 1) {
+        return new Call(
+            "TranslatedECertisCriteriaInfoFunction",
+            () ->
+                translated.run(
+                    InProcessRequest.get(
+                        "v2/regulated/criteria/eCertisData/"
+                            + criterionID
+                            + "/country/"
+                            + country
+                            + "/lang/"
+                            + lang),
+                    "v2",
+                    "regulated",
+                    criterionID,
+                    country,
+                    lang,
+                    new InProcessContext("TranslatedECertisCriteriaInfoFunction")));
+      }
+      return new Call(
+          "ECertisCriteriaInfoFunction",
+          () ->
+              function.run(
+                  InProcessRequest.get(
+                      "v2/regulated/criteria/eCertisData/" + criterionID + "/country/" + country),
+                  "regulated",
+                  criterionID,
+                  country,
+                  new InProcessContext("ECertisCriteriaInfoFunction")));
+    }
+  }
+
+  /** Exports of the bundled ESPD request in two random languages and formats at once. */
+  static final class BatchExports extends Workload {
+    private final BatchExportESPDFunction function = new BatchExportESPDFunction();
+    private byte[] json;
+
+    @Override
+    void setUp() throws Exception {
+      json = requestJson();
+    }
+
+    @Override
+    Call next(Random random) {
+      String languages =
+          LANGUAGES[random.nextInt(LANGUAGES.length)]
+              + ","
+              + LANGUAGES[random.nextInt(LANGUAGES.length)];
+      String exportTypes =
+          EXPORT_TYPES[random.nextInt(EXPORT_TYPES.length)]
+              + ","
+              + EXPORT_TYPES[random.nextInt(EXPORT_TYPES.length)];
+      return new Call(
+          "BatchExportESPDFunction",
+          () ->
+              function.run(
+                  InProcessRequest.post("v2/espd/request/batch", "application/json", json)
+                      .query("language", languages)
+                      .query("exportType", exportTypes),
+                  "v2",
+                  "request",
+                  new InProcessContext("BatchExportESPDFunction")));
+    }
+  }
+
+  /** Uploads of a ZIP archive with several copies of the bundled ESPD request XML. */
+  static final class BulkImports extends Workload {
+    private final BulkImportESPDFunction function = new BulkImportESPDFunction();
+    private byte[] zip;
+
+    @Override
+    void setUp() throws Exception {
+      byte[] xml = requestXml();
+      ByteArrayOutputStream archive = new ByteArrayOutputStream();
+      try (ZipOutputStream out = new ZipOutputStream(archive)) {
+        for (int i = 1; i <= BULK_FILES; i++) {
+          out.putNextEntry(new ZipEntry("request-" + i + ".xml"));
+          out.write(xml);
+          out.closeEntry();
+        }
+      }
+      zip = archive.toByteArray();
+    }
+
+    @Override
+    Call next(Random random) {
+      return new Call(
+          "BulkImportESPDFunction",
+          () ->
+              function.run(
+                  InProcessRequest.post("importESPD/request/bulk", "application/zip", zip),
+                  "request",
+                  new InProcessContext("BulkImportESPDFunction")));
+    }
+  }
+
+  /** Reads of the metrics endpoint, as a monitoring scraper does while the instance is busy. */
+  static final class MetricsScrapes extends Workload {
+    private final MetricsFunction function = new MetricsFunction();
+
+    @Override
+    void setUp() {}
+
+    @Override
+    Call next(Random random) {
+      return new Call(
+          "MetricsFunction",
+          () ->
+              function.run(
+                  InProcessRequest.get("metrics"), new InProcessContext("MetricsFunction")));
+    }
+  }
+
+  /** The other workloads interleaved at random. */
+  static final class Mixed extends Workload {
+    private final Workload[] workloads;
+
+    Mixed(Workload... workloads) {
+      this.workloads = workloads;
+    }
+
+    @Override
+    void setUp() throws Exception {
+      for (Workload workload : workloads) workload.setUp();
+    }
+
+    @Override
+    Call next(Random random) {
+      return workloads[random.nextInt(workloads.length)].next(random);
+    }
+  }
+
+  private static byte[] requestXml() throws Exception {
+    try (InputStream in = Workload.class.getResourceAsStream(REQUEST_FIXTURE)) {
+      return in.readAllBytes();
+    }
+  }
+
+  /** The bundled ESPD request, imported once and serialized as the designer UI posts it. */
+  private static byte[] requestJson() throws Exception {
+    Path xml = Files.createTempFile("espd-loadtest", ".xml");
+    try (InputStream in = Workload.class.getResourceAsStream(REQUEST_FIXTURE)) {
+      Files.copy(in, xml, StandardCopyOption.REPLACE_EXISTING);
+      Object document =
+          ImportESPDRequestService.getInstance()
+              .importESPDFile(xml.toFile(), ContractingOperatorEnum.CONTRACTING_AUTHORITY);
+      return JacksonRegistry.getMapper(EDMVersion.V2).writeValueAsBytes(document);
+    } finally {
+      Files.deleteIfExists(xml);
+    }
+  }
+
+  private static JsonNode bodyAsJson(HttpResponseMessage response) throws Exception {
+    Object body = response.getBody();
+    if (response.getStatusCode() != 200 || body == null)
+      throw new IllegalStateException("Setup call failed with status " + response.getStatusCode());
+    return body instanceof byte[]
+        ? MAPPER.readTree((byte[]) body)
+        : MAPPER.readTree(body.toString());
+  }
+
+  /** Collects the names listed in a JSON array of strings, or of objects with a name field. */
+  private static void collectText(JsonNode node, List<String> names) {
+    if (!node.isArray()) return;
+    for (JsonNode element : node) {
+      if (element.isTextual()) names.add(element.asText());
+      else if (element.has("name")) names.add(element.get("name").asText());
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package eu.esens.espdvcd.designer.serverless.codelists;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-process cache of serialized codelist responses, keyed by (version, codelist, lang).
+ * Codelists only change with a redeployment, so entries never expire; only successful lookups
+ * are stored, which keeps the key space bounded by the codelists and languages that exist.
+ */
+public final class CodelistResponseCache {
+
+  private static final CodelistResponseCache INSTANCE = new CodelistResponseCache();
+
+  private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+  private final String cacheControl =
+      "public, max-age=" + ServerlessConfig.getInstance().codelistsMaxAge();
+
+  private CodelistResponseCache() {}
+
+  public static CodelistResponseCache getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns the cached response, or {@code null} if it has not been built yet. */
+  public CachedResponse get(String version, String codelist, String lang) {
+    return entries.get(key(version, codelist, lang));
+  }
+
+  /** Serializes the service result and stores it, keeping an existing entry if one raced in. */
+  public CachedResponse put(String version, String codelist, String lang, Object result)
+      throws JsonProcessingException {
+    CachedResponse response = CachedResponse.json(result, cacheControl);
+    CachedResponse existing = entries.putIfAbsent(key(version, codelist, lang), response);
+    return existing == null ? response : existing;
+  }
+
+  /** Drops the translated codelists of a version, once they are served from elsewhere. */
+  void removeTranslations(String version) {
+    String prefix = version.toUpperCase() + '/';
+    entries.keySet().removeIf(key -> key.startsWith(prefix) && !key.endsWith("/"));
+  }
+
+  String getCacheControl() {
+    return cacheControl;
+  }
+
+  private static String key(String version, String codelist, String lang) {
+    return version.toUpperCase()
+        + '/'
+        + (codelist == null ? "" : codelist)
+        + '/'
+        + (lang == null ? "" : lang);
+  }
+}
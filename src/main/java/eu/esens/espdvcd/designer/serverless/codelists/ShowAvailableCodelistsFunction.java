@@ -1,13 +1,17 @@
 package eu.esens.espdvcd.designer.serverless.codelists;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.CodelistsService;
-import eu.esens.espdvcd.designer.service.CodelistsV1Service;
-import eu.esens.espdvcd.designer.service.CodelistsV2Service;
 import eu.esens.espdvcd.designer.util.Errors;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -16,6 +20,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ShowAvailableCodelistsFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/ShowAvailableCodelistsFunction". Two ways to invoke it
    * using "curl" command in bash: 1. curl -d "HTTP Body" {your
@@ -32,26 +40,32 @@ public class ShowAvailableCodelistsFunction {
           HttpRequestMessage<Optional<String>> request,
       @BindingName("version") String version,
       final ExecutionContext context) {
-    CodelistsService codelistsService;
-    switch (version.toUpperCase()) {
-      case "V2":
-        codelistsService = CodelistsV2Service.getInstance();
-        break;
-      case "V1":
-        codelistsService = CodelistsV1Service.getInstance();
-        break;
-      default:
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ShowAvailableCodelistsFunction");
+    try {
+      return handle(request, version);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(HttpRequestMessage<Optional<String>> request, String version) {
+    CodelistsService codelistsService = RequestPipeline.codelistsService(version);
+    if (codelistsService == null)
+      return CommonError.UNSUPPORTED_CODELISTS_VERSION.toResponse(request);
+
+    CodelistResponseCache cache = CodelistResponseCache.getInstance();
+    CachedResponse response = cache.get(version, null, null);
+    if (response == null) {
+      try {
+        response = cache.put(version, null, null, codelistsService.getAvailableCodelists());
+      } catch (JsonProcessingException e) {
         return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(Errors.notAcceptableError(String.format("Version %s is not supported.", version)))
+            .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(Errors.standardError(500, e.getMessage()))
             .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
             .build();
+      }
     }
-
-    return request
-        .createResponseBuilder(HttpStatus.OK)
-        .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-        .body(codelistsService.getAvailableCodelists())
-        .build();
+    return response.toResponse(request);
   }
 }
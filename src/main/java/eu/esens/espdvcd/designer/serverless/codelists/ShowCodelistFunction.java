@@ -1,13 +1,17 @@
 package eu.esens.espdvcd.designer.serverless.codelists;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.CodelistsService;
-import eu.esens.espdvcd.designer.service.CodelistsV1Service;
-import eu.esens.espdvcd.designer.service.CodelistsV2Service;
 import eu.esens.espdvcd.designer.util.Errors;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -16,6 +20,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ShowCodelistFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/ShowCodelistFunction". Two ways to invoke it using
    * "curl" command in bash: 1. curl -d "HTTP Body" {your host}/api/ShowCodelistFunction 2. curl
@@ -32,41 +40,47 @@ public class ShowCodelistFunction {
       @BindingName("version") String version,
       @BindingName("codelist") String codelist,
       final ExecutionContext context) {
-    CodelistsService codelistsService;
-    switch (version.toUpperCase()) {
-      case "V2":
-        codelistsService = CodelistsV2Service.getInstance();
-        break;
-      case "V1":
-        codelistsService = CodelistsV1Service.getInstance();
-        break;
-      default:
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(Errors.notAcceptableError(String.format("Version %s is not supported.", version)))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ShowCodelistFunction");
+    try {
+      return handle(request, version, codelist);
+    } finally {
+      invocation.end();
     }
+  }
 
-    if ((codelist == null || codelist.isBlank())) {
-      return request
-          .createResponseBuilder(HttpStatus.OK)
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .body(codelistsService.getAvailableCodelists())
-          .build();
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request, String version, String codelist) {
+    CodelistsService codelistsService = RequestPipeline.codelistsService(version);
+    if (codelistsService == null)
+      return CommonError.UNSUPPORTED_CODELISTS_VERSION.toResponse(request);
+
+    if (codelist != null && codelist.isBlank()) {
+      codelist = null;
+    }
+
+    CodelistResponseCache cache = CodelistResponseCache.getInstance();
+    CachedResponse response = cache.get(version, codelist, null);
+    if (response != null) {
+      return response.toResponse(request);
     }
 
     try {
-      return request
-          .createResponseBuilder(HttpStatus.OK)
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .body(codelistsService.getCodelist(codelist))
-          .build();
+      response =
+          cache.put(
+              version,
+              codelist,
+              null,
+              codelist == null
+                  ? codelistsService.getAvailableCodelists()
+                  : codelistsService.getCodelist(codelist));
+      return response.toResponse(request);
     } catch (IllegalArgumentException e) {
+      return CommonError.CODELIST_NOT_FOUND.toResponse(request);
+    } catch (JsonProcessingException e) {
       return request
-          .createResponseBuilder(HttpStatus.NOT_FOUND)
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .body(Errors.codelistNotFoundError())
           .build();
     }
   }
@@ -1,15 +1,22 @@
 package eu.esens.espdvcd.designer.serverless.codelists;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
 import eu.esens.espdvcd.designer.exception.LanguageNotExistsException;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.EnumLookup;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.CodelistsService;
-import eu.esens.espdvcd.designer.service.CodelistsV1Service;
-import eu.esens.espdvcd.designer.service.CodelistsV2Service;
 import eu.esens.espdvcd.designer.util.Errors;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
 
@@ -17,6 +24,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ShowTranslatedCodelistFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/HttpExample". Two ways to invoke it using "curl"
    * command in bash: 1. curl -d "HTTP Body" {your host}/api/HttpExample 2. curl "{your
@@ -34,50 +45,77 @@ public class ShowTranslatedCodelistFunction {
       @BindingName("codelist") String codelist,
       @BindingName("lang") String lang,
       final ExecutionContext context) {
-    CodelistsService codelistsService;
-    switch (version.toUpperCase()) {
-      case "V2":
-        codelistsService = CodelistsV2Service.getInstance();
-        break;
-      case "V1":
-        codelistsService = CodelistsV1Service.getInstance();
-        break;
-      default:
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(Errors.notAcceptableError(String.format("Version %s is not supported.", version)))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ShowTranslatedCodelistFunction");
+    try {
+      return handle(request, version, codelist, lang);
+    } finally {
+      invocation.end();
     }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request, String version, String codelist, String lang) {
+    CodelistsService codelistsService = RequestPipeline.codelistsService(version);
+    if (codelistsService == null)
+      return CommonError.UNSUPPORTED_CODELISTS_VERSION.toResponse(request);
+
+    CodelistResponseCache cache = CodelistResponseCache.getInstance();
 
     if ((codelist == null || codelist.isBlank()) && (lang == null || lang.isBlank())) {
-      return request
-          .createResponseBuilder(HttpStatus.OK)
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .body(codelistsService.getAvailableCodelists())
-          .build();
+      CachedResponse response = cache.get(version, null, null);
+      if (response == null) {
+        try {
+          response = cache.put(version, null, null, codelistsService.getAvailableCodelists());
+        } catch (JsonProcessingException e) {
+          return request
+              .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+              .body(Errors.standardError(500, e.getMessage()))
+              .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+              .build();
+        }
+      }
+      return response.toResponse(request);
     }
 
     if (lang == null || lang.isBlank()) {
+      CachedResponse response = cache.get(version, codelist, null);
+      if (response != null) {
+        return response.toResponse(request);
+      }
       try {
-        return request
-            .createResponseBuilder(HttpStatus.OK)
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .body(codelistsService.getCodelist(codelist))
-            .build();
+        return cache
+            .put(version, codelist, null, codelistsService.getCodelist(codelist))
+            .toResponse(request);
       } catch (IllegalArgumentException e) {
+        return CommonError.CODELIST_NOT_FOUND.toResponse(request);
+      } catch (JsonProcessingException e) {
         return request
-            .createResponseBuilder(HttpStatus.NOT_FOUND)
+            .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(Errors.standardError(500, e.getMessage()))
             .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .body(Errors.codelistNotFoundError())
             .build();
       }
     }
 
+    EULanguageCodeEnum language = EnumLookup.parse(EULanguageCodeEnum.class, lang);
+    if (language != null && RequestPipeline.version(version) == EDMVersion.V2) {
+      CachedResponse mapped = TranslatedCodelistBlob.getInstance().get(codelist, language);
+      if (mapped != null) return mapped.toResponse(request);
+    }
+
+    CachedResponse response = cache.get(version, codelist, lang);
+    if (response != null) {
+      return response.toResponse(request);
+    }
+
     try {
+      return cache
+          .put(version, codelist, lang, codelistsService.getTranslatedCodelist(codelist, lang))
+          .toResponse(request);
+    } catch (JsonProcessingException e) {
       return request
-          .createResponseBuilder(HttpStatus.OK)
-          .body(codelistsService.getTranslatedCodelist(codelist, lang))
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
     } catch (LanguageNotExistsException e) {
@@ -93,11 +131,7 @@ public class ShowTranslatedCodelistFunction {
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
     } catch (UnsupportedOperationException e) {
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(Errors.notAcceptableError("Translation for V1 codelists is not supported."))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
+      return CommonError.V1_TRANSLATION_UNSUPPORTED.toResponse(request);
     }
   }
 }
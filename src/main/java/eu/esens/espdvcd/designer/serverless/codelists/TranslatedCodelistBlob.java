@@ -0,0 +1,155 @@
+package eu.esens.espdvcd.designer.serverless.codelists;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.ResponseEncoding;
+import eu.esens.espdvcd.designer.serverless.util.ScratchSpace;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.service.CodelistsService;
+import eu.esens.espdvcd.designer.service.CodelistsV2Service;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+import org.apache.http.entity.ContentType;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Every translation of every V2 codelist, generated once into a scratch file and served from a
+ * read-only memory mapping of it. The file holds the identity, gzip and brotli bodies back to
+ * back, compressed at the fastest levels since there are about a thousand of them. The offset
+ * index is a small map of {@link CachedResponse} slices, so a lookup allocates nothing but the
+ * copy of the body handed to the worker.
+ *
+ * <p>Until {@link #build()} has finished, and for translations that failed to generate, {@link
+ * #get} returns {@code null} and the function falls back to the codelists service.
+ */
+public final class TranslatedCodelistBlob {
+
+  private static final Logger LOGGER = Logger.getLogger(TranslatedCodelistBlob.class.getName());
+  private static final TranslatedCodelistBlob INSTANCE = new TranslatedCodelistBlob();
+
+  private volatile Map<String, CachedResponse> entries = Collections.emptyMap();
+  private volatile long size;
+  private ScratchSpace.ScratchFile file;
+
+  private TranslatedCodelistBlob() {}
+
+  public static TranslatedCodelistBlob getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns the mapped translation, or {@code null} if the blob does not hold it. */
+  public CachedResponse get(String codelist, EULanguageCodeEnum language) {
+    return entries.get(key(codelist, language));
+  }
+
+  /** Number of translations in the blob. */
+  public int getEntries() {
+    return entries.size();
+  }
+
+  /** Size of the blob file in bytes. */
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Generates the blob unless it is disabled or already built. Translations the service rejects
+   * are left out, so their errors keep coming from the service.
+   */
+  public synchronized void build() throws IOException {
+    if (file != null || !ServerlessConfig.getInstance().isCodelistBlobEnabled()) return;
+
+    CodelistsService codelists = CodelistsV2Service.getInstance();
+    String cacheControl = CodelistResponseCache.getInstance().getCacheControl();
+    ResponseEncoding[] encodings = ResponseEncoding.values();
+    List<String> keys = new ArrayList<>();
+    List<String> etags = new ArrayList<>();
+    List<long[]> slices = new ArrayList<>();
+
+    ScratchSpace.ScratchFile blob = ScratchSpace.getInstance().create(".codelists", -1);
+    long offset = 0;
+    try {
+      try (OutputStream out = new BufferedOutputStream(blob.newOutputStream())) {
+        for (JsonNode name : JacksonRegistry.getMapper(EDMVersion.V2)
+            .valueToTree(codelists.getAvailableCodelists())) {
+          String codelist = name.asText();
+          for (EULanguageCodeEnum language : EULanguageCodeEnum.values()) {
+            CachedResponse response;
+            try {
+              response =
+                  CachedResponse.json(
+                      codelists.getTranslatedCodelist(
+                          codelist, language.name().toLowerCase(Locale.ROOT)),
+                      cacheControl,
+                      true);
+            } catch (Exception e) {
+              LOGGER.log(Level.FINE, "Left " + codelist + "/" + language + " out of the blob.", e);
+              continue;
+            }
+            // Offset and length of each encoding's body, -1 where there is no variant
+            long[] slice = new long[encodings.length * 2];
+            for (ResponseEncoding encoding : encodings) {
+              byte[] body = response.getBody(encoding);
+              slice[encoding.ordinal() * 2] = body == null ? -1 : offset;
+              slice[encoding.ordinal() * 2 + 1] = body == null ? 0 : body.length;
+              if (body == null) continue;
+              out.write(body);
+              offset += body.length;
+            }
+            keys.add(key(codelist, language));
+            etags.add(response.getEtag());
+            slices.add(slice);
+          }
+        }
+      }
+
+      MappedByteBuffer mapping;
+      try (FileChannel channel = FileChannel.open(blob.getPath())) {
+        mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, offset);
+      }
+      Map<String, CachedResponse> mapped = new HashMap<>(keys.size() * 2);
+      for (int i = 0; i < keys.size(); i++) {
+        long[] slice = slices.get(i);
+        ByteBuffer[] bodies = new ByteBuffer[encodings.length];
+        for (int e = 0; e < encodings.length; e++) {
+          if (slice[e * 2] < 0) continue;
+          ByteBuffer body = mapping.duplicate();
+          body.position((int) slice[e * 2]).limit((int) (slice[e * 2] + slice[e * 2 + 1]));
+          bodies[e] = body.slice().asReadOnlyBuffer();
+        }
+        mapped.put(
+            keys.get(i),
+            CachedResponse.mapped(
+                bodies, etags.get(i), ContentType.APPLICATION_JSON.getMimeType(), cacheControl));
+      }
+      file = blob;
+      size = offset;
+      entries = Collections.unmodifiableMap(mapped);
+    } catch (IOException | RuntimeException e) {
+      blob.close();
+      throw e;
+    }
+    // The heap copies built before the blob are no longer served
+    CodelistResponseCache.getInstance().removeTranslations(EDMVersion.V2.name());
+    LOGGER.info(String.format("Mapped %d translated codelists, %d bytes.", entries.size(), size));
+  }
+
+  private static String key(String codelist, EULanguageCodeEnum language) {
+    return codelist + '/' + language.name();
+  }
+}
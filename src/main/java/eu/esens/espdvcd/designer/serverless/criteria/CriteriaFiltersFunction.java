@@ -1,14 +1,18 @@
 package eu.esens.espdvcd.designer.serverless.criteria;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.CriteriaService;
-import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
-import eu.esens.espdvcd.designer.service.SelfContainedCriteriaService;
 import eu.esens.espdvcd.designer.util.Errors;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
 
@@ -16,6 +20,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class CriteriaFiltersFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/CriteriaFiltersFunction". Two ways to invoke it using
    * "curl" command in bash: 1. curl -d "HTTP Body" {your host}/api/CriteriaFiltersFunction 2. curl
@@ -32,31 +40,39 @@ public class CriteriaFiltersFunction {
           @BindingName("version") String version,
           @BindingName("qualificationApplicationType") String qualificationApplicationType,
           final ExecutionContext context) {
-    CriteriaService criteriaService;
+    Metrics.Invocation invocation = Metrics.getInstance().begin("CriteriaFiltersFunction");
+    try {
+      return handle(request, version, qualificationApplicationType);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request,
+      String version,
+      String qualificationApplicationType) {
+    CriteriaService criteriaService =
+        RequestPipeline.criteriaService(version, qualificationApplicationType);
+    if (criteriaService == null)
+      return CommonError.UNSUPPORTED_CRITERIA_ROUTE.toResponse(request);
 
-    if (version.equalsIgnoreCase("V1") && qualificationApplicationType.equals("regulated")) {
-      criteriaService = RegulatedCriteriaService.getV1Instance();
-    } else if (version.equalsIgnoreCase("V2") && qualificationApplicationType.equals("regulated")) {
-      criteriaService = RegulatedCriteriaService.getV2Instance();
-    } else if (version.equalsIgnoreCase("V2")
-        && qualificationApplicationType.equals("selfcontained")) {
-      criteriaService = SelfContainedCriteriaService.getInstance();
-    } else {
+    try {
+      return CriteriaSnapshotStore.getInstance()
+          .getCriteriaFilters(criteriaService)
+          .toResponse(request);
+    } catch (RetrieverException e) {
       return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(
-              Errors.notAcceptableError(
-                  String.format(
-                      "Version %s for qualification application type %s is not supported.",
-                      version, qualificationApplicationType)))
+          .createResponseBuilder(HttpStatus.BAD_GATEWAY)
+          .body(Errors.retrieverError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (JsonProcessingException e) {
+      return request
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
     }
-
-    return request
-            .createResponseBuilder(HttpStatus.OK)
-            .body(criteriaService.getCriteriaFilters())
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
   }
 }
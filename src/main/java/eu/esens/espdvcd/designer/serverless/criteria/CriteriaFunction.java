@@ -7,11 +7,12 @@ import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
 import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.CriteriaService;
-import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
-import eu.esens.espdvcd.designer.service.SelfContainedCriteriaService;
 import eu.esens.espdvcd.designer.util.Errors;
-import eu.esens.espdvcd.designer.util.JsonUtil;
 import eu.esens.espdvcd.retriever.exception.RetrieverException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -20,6 +21,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class CriteriaFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/CriteriaFunction". Two ways to invoke it using "curl"
    * command in bash: 1. curl -d "HTTP Body" {your host}/api/CriteriaFunction 2. curl {your
@@ -36,41 +41,30 @@ public class CriteriaFunction {
       @BindingName("version") String version,
       @BindingName("qualificationApplicationType") String qualificationApplicationType,
       final ExecutionContext context) {
-    CriteriaService criteriaService;
-
-    if (version.equalsIgnoreCase("V1") && qualificationApplicationType.equals("regulated")) {
-      criteriaService = RegulatedCriteriaService.getV1Instance();
-    } else if (version.equalsIgnoreCase("V2") && qualificationApplicationType.equals("regulated")) {
-      criteriaService = RegulatedCriteriaService.getV2Instance();
-    } else if (version.equalsIgnoreCase("V2") && qualificationApplicationType.equals("selfcontained")) {
-      criteriaService = SelfContainedCriteriaService.getInstance();
-    } else {
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(
-              Errors.notAcceptableError(
-                  String.format(
-                      "Version %s for qualification application type %s is not supported.",
-                      version, qualificationApplicationType)))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
-    }
-
-    // Parse query parameter
-    String contractingOperator = request.getQueryParameters().get("contractingOperator");
-    ContractingOperatorEnum contractingOperatorEnum;
+    Metrics.Invocation invocation = Metrics.getInstance().begin("CriteriaFunction");
     try {
-      contractingOperatorEnum = ContractingOperatorEnum.valueOf(contractingOperator);
-    } catch (IllegalArgumentException | NullPointerException e) {
-      contractingOperatorEnum = ContractingOperatorEnum.CONTRACTING_ENTITY;
+      return handle(request, version, qualificationApplicationType);
+    } finally {
+      invocation.end();
     }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request,
+      String version,
+      String qualificationApplicationType) {
+    CriteriaService criteriaService =
+        RequestPipeline.criteriaService(version, qualificationApplicationType);
+    if (criteriaService == null)
+      return CommonError.UNSUPPORTED_CRITERIA_ROUTE.toResponse(request);
+
+    ContractingOperatorEnum contractingOperatorEnum =
+        RequestPipeline.contractingOperator(request);
 
     try {
-      return request
-          .createResponseBuilder(HttpStatus.OK)
-          .body(JsonUtil.toJson(criteriaService.getCriteria(contractingOperatorEnum)))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
+      return CriteriaSnapshotStore.getInstance()
+          .getCriteria(criteriaService, contractingOperatorEnum)
+          .toResponse(request);
     } catch (RetrieverException e) {
       return request
           .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,134 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.EnumLookup;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.designer.util.Errors;
+import eu.esens.espdvcd.designer.util.JsonUtil;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/** Azure Functions with HTTP Trigger. */
+public class CriteriaSearchFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
+  private static final int DEFAULT_PAGE_SIZE = 20;
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int MAX_QUERY_LENGTH = 200;
+
+  /**
+   * This function listens at endpoint "/api/CriteriaSearchFunction". It searches the English
+   * names, descriptions and legislation references of the criteria, and the names of their types
+   * in any EU language, and returns one page of ranked matches: curl "{your
+   * host}/api/v2/regulated/criteria/search?q=bankrupt&lang=en&page=1&size=20"
+   */
+  @FunctionName("CriteriaSearchFunction")
+  public HttpResponseMessage run(
+      @HttpTrigger(
+              name = "req",
+              methods = {HttpMethod.GET},
+              route = "{version}/{qualificationApplicationType}/criteria/search",
+              authLevel = AuthorizationLevel.ANONYMOUS)
+          HttpRequestMessage<Optional<String>> request,
+      @BindingName("version") String version,
+      @BindingName("qualificationApplicationType") String qualificationApplicationType,
+      final ExecutionContext context) {
+    Metrics.Invocation invocation = Metrics.getInstance().begin("CriteriaSearchFunction");
+    try {
+      return handle(request, version, qualificationApplicationType, invocation);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request,
+      String version,
+      String qualificationApplicationType,
+      Metrics.Invocation invocation) {
+    CriteriaService criteriaService =
+        RequestPipeline.criteriaService(version, qualificationApplicationType);
+    if (criteriaService == null)
+      return CommonError.UNSUPPORTED_CRITERIA_ROUTE.toResponse(request);
+
+    Map<String, String> parameters = request.getQueryParameters();
+    String query = parameters.get("q");
+    if (query == null || query.length() > MAX_QUERY_LENGTH)
+      return CommonError.INVALID_SEARCH_QUERY.toResponse(request);
+    // A query of punctuation only, such as "!!!", has nothing to search for
+    Set<String> terms = CriteriaSearchIndex.queryTerms(query);
+    if (terms.isEmpty()) return CommonError.INVALID_SEARCH_QUERY.toResponse(request);
+
+    EULanguageCodeEnum language = null;
+    String lang = parameters.get("lang");
+    if (lang != null && !lang.isBlank()) {
+      language = EnumLookup.parse(EULanguageCodeEnum.class, lang);
+      if (language == null) return CommonError.INVALID_LANGUAGE.toResponse(request);
+    }
+
+    int page = parseNumber(parameters.get("page"), 1);
+    int size = parseNumber(parameters.get("size"), DEFAULT_PAGE_SIZE);
+    if (page < 1 || size < 1 || size > MAX_PAGE_SIZE)
+      return CommonError.INVALID_PAGINATION.toResponse(request);
+
+    ContractingOperatorEnum contractingOperatorEnum =
+        RequestPipeline.contractingOperator(request);
+
+    try {
+      CriteriaSearchIndex index =
+          CriteriaSnapshotStore.getInstance()
+              .getSearchIndex(criteriaService, contractingOperatorEnum);
+      invocation.phase("index");
+      int offset = (int) Math.min((long) (page - 1) * size, index.size());
+      CriteriaSearchIndex.Page results = index.search(terms, language, offset, size);
+      invocation.phase("search");
+      String json = JsonUtil.toJson(results);
+      invocation.size("responseBytes", json);
+      return request
+          .createResponseBuilder(HttpStatus.OK)
+          .body(json)
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (RetrieverException e) {
+      return request
+          .createResponseBuilder(HttpStatus.BAD_GATEWAY)
+          .body(Errors.retrieverError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (JsonProcessingException e) {
+      return request
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    }
+  }
+
+  /** Returns the fallback for a missing parameter and -1 for one that is not a number. */
+  private static int parseNumber(String value, int fallback) {
+    if (value == null || value.isBlank()) return fallback;
+    try {
+      return Integer.parseInt(value.trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+}
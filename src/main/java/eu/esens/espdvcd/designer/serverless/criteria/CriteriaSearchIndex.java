@@ -0,0 +1,325 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.service.CodelistsService;
+import eu.esens.espdvcd.designer.service.CodelistsV2Service;
+import eu.esens.espdvcd.model.LegislationReference;
+import eu.esens.espdvcd.model.SelectableCriterion;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * An immutable inverted index over one criteria list, for full-text search. Names, descriptions and
+ * legislation references are indexed in English, the only language the criteria service provides
+ * them in. Only the names of the criterion types are multilingual: they are indexed in every EU
+ * language the V2 "CriteriaTypeCode" codelist is translated into.
+ *
+ * <p>Text is folded to lower case without accents and split into letter and digit runs. Each query
+ * term matches terms equal to it and, at a lower weight, terms it is a prefix of, so results show
+ * up while the user is still typing. A criterion matches when every query term matches one of its
+ * fields; matches are ranked by field weight and by how rare the term is.
+ */
+final class CriteriaSearchIndex {
+
+  private static final Logger LOGGER = Logger.getLogger(CriteriaSearchIndex.class.getName());
+  private static final String TYPE_CODE_LIST = "CriteriaTypeCode";
+  private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+  private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final float NAME_WEIGHT = 4f;
+  private static final float LEGISLATION_WEIGHT = 2f;
+  private static final float DESCRIPTION_WEIGHT = 1f;
+  private static final float PREFIX_FACTOR = 0.5f;
+  private static final int MIN_PREFIX_LENGTH = 2;
+  private static final int MAX_PREFIX_EXPANSION = 64;
+
+  private final Entry[] entries;
+  private final String[] terms;
+  private final int[][] postings;
+  private final float[][] weights;
+  private final boolean hasTypeNames;
+
+  private CriteriaSearchIndex(
+      Entry[] entries, String[] terms, int[][] postings, float[][] weights, boolean hasTypeNames) {
+    this.entries = entries;
+    this.terms = terms;
+    this.postings = postings;
+    this.weights = weights;
+    this.hasTypeNames = hasTypeNames;
+  }
+
+  /**
+   * Builds the index of the criteria. {@code typeNames} are the names from {@link
+   * #loadTypeNames()}, or {@code null} if they could not be loaded; the index then only knows the
+   * English texts.
+   */
+  static CriteriaSearchIndex build(
+      List<SelectableCriterion> criteria, Map<String, String[]> typeNames) {
+    Map<String, String[]> translatedNames =
+        typeNames == null ? Collections.emptyMap() : typeNames;
+    Entry[] entries = new Entry[criteria.size()];
+    Map<String, Map<Integer, Float>> index = new TreeMap<>();
+    for (int doc = 0; doc < entries.length; doc++) {
+      SelectableCriterion criterion = criteria.get(doc);
+      String[] names =
+          criterion.getTypeCode() == null ? null : translatedNames.get(criterion.getTypeCode());
+      entries[doc] = new Entry(criterion, names);
+
+      Map<String, Float> docTerms = new HashMap<>();
+      addField(docTerms, criterion.getName(), NAME_WEIGHT);
+      if (names != null) {
+        for (String name : names) addField(docTerms, name, NAME_WEIGHT);
+      }
+      LegislationReference legislation = criterion.getLegislationReference();
+      if (legislation != null) {
+        addField(docTerms, legislation.getTitle(), LEGISLATION_WEIGHT);
+        addField(docTerms, legislation.getArticle(), LEGISLATION_WEIGHT);
+        addField(docTerms, legislation.getDescription(), DESCRIPTION_WEIGHT);
+      }
+      addField(docTerms, criterion.getDescription(), DESCRIPTION_WEIGHT);
+      for (Map.Entry<String, Float> term : docTerms.entrySet()) {
+        index.computeIfAbsent(term.getKey(), key -> new TreeMap<>()).put(doc, term.getValue());
+      }
+    }
+
+    String[] terms = new String[index.size()];
+    int[][] postings = new int[index.size()][];
+    float[][] weights = new float[index.size()][];
+    int t = 0;
+    for (Map.Entry<String, Map<Integer, Float>> term : index.entrySet()) {
+      Map<Integer, Float> docs = term.getValue();
+      // Rare terms say more about a criterion than terms most criteria share
+      float idf = (float) Math.log(1 + (double) entries.length / docs.size());
+      terms[t] = term.getKey();
+      postings[t] = new int[docs.size()];
+      weights[t] = new float[docs.size()];
+      int i = 0;
+      for (Map.Entry<Integer, Float> doc : docs.entrySet()) {
+        postings[t][i] = doc.getKey();
+        weights[t][i] = doc.getValue() * idf;
+        i++;
+      }
+      t++;
+    }
+    return new CriteriaSearchIndex(entries, terms, postings, weights, typeNames != null);
+  }
+
+  /**
+   * Names of the criterion types per language ordinal, from the V2 "CriteriaTypeCode" codelist.
+   * Languages without a translation are left out; if no language loads, this throws.
+   */
+  static Map<String, String[]> loadTypeNames() {
+    CodelistsService codelists = CodelistsV2Service.getInstance();
+    EULanguageCodeEnum[] languages = EULanguageCodeEnum.values();
+    Map<String, String[]> byTypeCode = new HashMap<>();
+    int loaded = 0;
+    for (EULanguageCodeEnum language : languages) {
+      JsonNode items;
+      try {
+        items =
+            JacksonRegistry.getMapper(EDMVersion.V2)
+                .valueToTree(
+                    codelists.getTranslatedCodelist(
+                        TYPE_CODE_LIST, language.name().toLowerCase(Locale.ROOT)));
+      } catch (Exception e) {
+        LOGGER.log(Level.FINE, "No " + TYPE_CODE_LIST + " translation for " + language.name(), e);
+        continue;
+      }
+      loaded++;
+      for (JsonNode item : items) {
+        String code = item.path("code").asText(null);
+        String value = item.path("value").asText(null);
+        if (code == null || value == null) continue;
+        String[] names = byTypeCode.computeIfAbsent(code, key -> new String[languages.length]);
+        names[language.ordinal()] = value;
+      }
+    }
+    if (loaded == 0) {
+      throw new IllegalStateException("No translation of " + TYPE_CODE_LIST + " could be loaded.");
+    }
+    return byTypeCode;
+  }
+
+  /**
+   * Folds the query like the indexed text and returns its distinct terms, which are empty when the
+   * query holds no letter or digit.
+   */
+  static Set<String> queryTerms(String query) {
+    Set<String> queryTerms = new LinkedHashSet<>();
+    tokenize(query, queryTerms);
+    return queryTerms;
+  }
+
+  /** A field adds its weight once per term, however often the term occurs in it. */
+  private static void addField(Map<String, Float> docTerms, String text, float weight) {
+    Set<String> seen = new LinkedHashSet<>();
+    tokenize(text, seen);
+    for (String term : seen) docTerms.merge(term, weight, Float::sum);
+  }
+
+  private static void tokenize(String text, Set<String> into) {
+    if (text == null || text.isBlank()) return;
+    String folded =
+        COMBINING_MARKS
+            .matcher(Normalizer.normalize(text, Normalizer.Form.NFD))
+            .replaceAll("")
+            .toLowerCase(Locale.ROOT);
+    for (String term : SEPARATORS.split(folded)) {
+      if (!term.isEmpty()) into.add(term);
+    }
+  }
+
+  /**
+   * Returns one page of the criteria matching every one of the {@link #queryTerms(String)}, best
+   * first. Names are given in the requested language where a translation exists, and in English
+   * otherwise.
+   */
+  Page search(Set<String> queryTerms, EULanguageCodeEnum language, int offset, int limit) {
+    if (queryTerms.isEmpty()) return new Page(0, Collections.emptyList());
+
+    float[] scores = new float[entries.length];
+    int[] matchedTerms = new int[entries.length];
+    float[] termScores = new float[entries.length];
+    for (String term : queryTerms) {
+      Arrays.fill(termScores, 0f);
+      int position = Arrays.binarySearch(terms, term);
+      int next = position < 0 ? -position - 1 : position;
+      if (position >= 0) {
+        collect(position, 1f, termScores);
+        next++;
+      }
+      if (term.length() >= MIN_PREFIX_LENGTH) {
+        for (int expanded = 0;
+            next < terms.length && expanded < MAX_PREFIX_EXPANSION && terms[next].startsWith(term);
+            next++, expanded++) {
+          collect(next, PREFIX_FACTOR, termScores);
+        }
+      }
+      for (int doc = 0; doc < entries.length; doc++) {
+        if (termScores[doc] > 0) {
+          scores[doc] += termScores[doc];
+          matchedTerms[doc]++;
+        }
+      }
+    }
+
+    List<Integer> matches = new ArrayList<>();
+    for (int doc = 0; doc < entries.length; doc++) {
+      if (matchedTerms[doc] == queryTerms.size()) matches.add(doc);
+    }
+    // The sort is stable, so equal scores keep the order of the criteria list
+    matches.sort((a, b) -> Float.compare(scores[b], scores[a]));
+
+    List<Hit> hits = new ArrayList<>();
+    for (int i = offset; i < matches.size() && hits.size() < limit; i++) {
+      int doc = matches.get(i);
+      hits.add(new Hit(entries[doc], language, scores[doc]));
+    }
+    return new Page(matches.size(), hits);
+  }
+
+  /** A term matched through several prefixes counts with its best match only. */
+  private void collect(int term, float factor, float[] termScores) {
+    int[] docs = postings[term];
+    float[] docWeights = weights[term];
+    for (int i = 0; i < docs.length; i++) {
+      termScores[docs[i]] = Math.max(termScores[docs[i]], docWeights[i] * factor);
+    }
+  }
+
+  int size() {
+    return entries.length;
+  }
+
+  /** Whether the translated names of the criterion types were indexed. */
+  boolean hasTypeNames() {
+    return hasTypeNames;
+  }
+
+  private static final class Entry {
+    private final String id;
+    private final String typeCode;
+    private final String name;
+    private final String description;
+    private final String[] translatedNames;
+
+    private Entry(SelectableCriterion criterion, String[] translatedNames) {
+      this.id = criterion.getID();
+      this.typeCode = criterion.getTypeCode();
+      this.name = criterion.getName();
+      this.description = criterion.getDescription();
+      this.translatedNames = translatedNames;
+    }
+  }
+
+  /** One page of search results, serialized as the function's response. */
+  static final class Page {
+    private final int total;
+    private final List<Hit> results;
+
+    private Page(int total, List<Hit> results) {
+      this.total = total;
+      this.results = results;
+    }
+
+    public int getTotal() {
+      return total;
+    }
+
+    public List<Hit> getResults() {
+      return results;
+    }
+  }
+
+  /** A matching criterion together with its score. */
+  static final class Hit {
+    private final Entry entry;
+    private final String name;
+    private final float score;
+
+    private Hit(Entry entry, EULanguageCodeEnum language, float score) {
+      this.entry = entry;
+      String translated =
+          language == null || entry.translatedNames == null
+              ? null
+              : entry.translatedNames[language.ordinal()];
+      this.name = translated != null ? translated : entry.name;
+      this.score = score;
+    }
+
+    public String getId() {
+      return entry.id;
+    }
+
+    public String getTypeCode() {
+      return entry.typeCode;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getDescription() {
+      return entry.description;
+    }
+
+    public float getScore() {
+      return score;
+    }
+  }
+}
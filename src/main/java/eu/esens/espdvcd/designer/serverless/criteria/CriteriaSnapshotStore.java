@@ -0,0 +1,304 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.util.CachedResponse;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serialized criteria lists, filtered criteria lists and filter lists, built once per criteria
+ * service and contracting operator and served as immutable UTF-8 bytes. Call {@link
+ * #invalidate(CriteriaService)} or {@link #invalidateAll()} whenever the underlying criteria are
+ * reloaded.
+ *
+ * <p>Filtered lists are served from a {@link FilterIndex} that holds every filter the service
+ * advertises for every contracting operator, so a lookup never reaches the service. Criteria
+ * searches run against a {@link CriteriaSearchIndex} per service and contracting operator.
+ */
+public final class CriteriaSnapshotStore {
+
+  private static final Logger LOGGER = Logger.getLogger(CriteriaSnapshotStore.class.getName());
+  private static final CriteriaSnapshotStore INSTANCE = new CriteriaSnapshotStore();
+  private static final String CACHE_CONTROL = "no-cache";
+  private static final String ALL_CRITERIA = "all";
+  private static final String FILTERS = "filters";
+  private static final String SEARCH = "search";
+  private static final String TYPE_NAMES = "typeNames";
+  private static final long TYPE_NAMES_RETRY_MILLIS = 30_000;
+  private static final long TYPE_NAMES_MAX_RETRY_MILLIS = 30 * 60_000;
+
+  private final Map<SnapshotKey, CachedResponse> snapshots = new ConcurrentHashMap<>();
+  private final Map<CriteriaService, CompletableFuture<FilterIndex>> filterIndexes =
+      new ConcurrentHashMap<>();
+  private final Map<SnapshotKey, CompletableFuture<CriteriaSearchIndex>> searchIndexes =
+      new ConcurrentHashMap<>();
+  private final Map<String, CompletableFuture<Map<String, String[]>>> typeNames =
+      new ConcurrentHashMap<>();
+  private final AtomicLong generation = new AtomicLong();
+  private int typeNamesFailures;
+  private volatile long typeNamesRetryAt;
+
+  private CriteriaSnapshotStore() {}
+
+  public static CriteriaSnapshotStore getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns the snapshot of the criteria list, serializing it on first use. */
+  public CachedResponse getCriteria(
+      CriteriaService criteriaService, ContractingOperatorEnum contractingOperator)
+      throws RetrieverException, JsonProcessingException {
+    return getSnapshot(
+        new SnapshotKey(criteriaService, contractingOperator, ALL_CRITERIA),
+        () -> criteriaService.getCriteria(contractingOperator));
+  }
+
+  /**
+   * Returns the snapshot of the criteria list matching a filter, or {@code null} if the service
+   * does not advertise the filter. Filters are matched regardless of case.
+   */
+  public CachedResponse getFilteredCriteria(
+      CriteriaService criteriaService, String filter, ContractingOperatorEnum contractingOperator)
+      throws RetrieverException, JsonProcessingException {
+    if (filter == null) return null;
+    CachedResponse[] byOperator =
+        getFilterIndex(criteriaService).byFilter.get(filter.toUpperCase(Locale.ROOT));
+    return byOperator == null ? null : byOperator[contractingOperator.ordinal()];
+  }
+
+  /** Builds the filter index of the service ahead of the first filtered lookup. */
+  public void prepareFilteredCriteria(CriteriaService criteriaService)
+      throws RetrieverException, JsonProcessingException {
+    getFilterIndex(criteriaService);
+  }
+
+  /** Returns the snapshot of the filters the criteria service knows. */
+  public CachedResponse getCriteriaFilters(CriteriaService criteriaService)
+      throws RetrieverException, JsonProcessingException {
+    return getSnapshot(
+        new SnapshotKey(criteriaService, null, FILTERS), criteriaService::getCriteriaFilters);
+  }
+
+  private CachedResponse getSnapshot(SnapshotKey key, Source source)
+      throws RetrieverException, JsonProcessingException {
+    CachedResponse snapshot = snapshots.get(key);
+    if (snapshot != null) return snapshot;
+
+    long expectedGeneration = generation.get();
+    snapshot = CachedResponse.json(source.load(), CACHE_CONTROL);
+    // A snapshot built from data that was invalidated meanwhile is served once but not kept
+    if (generation.get() == expectedGeneration) {
+      CachedResponse existing = snapshots.putIfAbsent(key, snapshot);
+      if (existing != null) return existing;
+    }
+    return snapshot;
+  }
+
+  /** Returns the search index of the criteria list, building it on first use. */
+  CriteriaSearchIndex getSearchIndex(
+      CriteriaService criteriaService, ContractingOperatorEnum contractingOperator)
+      throws RetrieverException, JsonProcessingException {
+    SnapshotKey key = new SnapshotKey(criteriaService, contractingOperator, SEARCH);
+    IndexBuilder<CriteriaSearchIndex> builder =
+        () ->
+            CriteriaSearchIndex.build(
+                criteriaService.getCriteria(contractingOperator), getTypeNames());
+    CriteriaSearchIndex index = getIndex(searchIndexes, key, builder);
+    // An index without the translated type names is kept until the names load
+    if (!index.hasTypeNames() && getTypeNames() != null) {
+      searchIndexes.remove(key);
+      index = getIndex(searchIndexes, key, builder);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the translated names of the criterion types, loading them on first use, or {@code
+   * null} if they cannot be loaded now. After a failed load they are only retried once a backoff
+   * has passed, which doubles with every failure, so searches do not keep reloading them.
+   */
+  private Map<String, String[]> getTypeNames() {
+    if (!typeNames.containsKey(TYPE_NAMES) && System.currentTimeMillis() < typeNamesRetryAt)
+      return null;
+    try {
+      return getIndex(typeNames, TYPE_NAMES, CriteriaSearchIndex::loadTypeNames);
+    } catch (Exception | LinkageError e) {
+      long backoff = typeNamesFailed();
+      LOGGER.log(
+          Level.WARNING,
+          String.format(
+              "Could not load the criterion type names, searching without them for %d s.",
+              backoff / 1000),
+          e);
+      return null;
+    }
+  }
+
+  /** Records a failed load of the type names and returns the backoff before the next one. */
+  private synchronized long typeNamesFailed() {
+    long backoff = TYPE_NAMES_RETRY_MILLIS << Math.min(typeNamesFailures, 16);
+    backoff = Math.min(TYPE_NAMES_MAX_RETRY_MILLIS, backoff);
+    typeNamesFailures++;
+    typeNamesRetryAt = System.currentTimeMillis() + backoff;
+    return backoff;
+  }
+
+  /** Builds the search indexes of the service ahead of the first search. */
+  public void prepareCriteriaSearch(CriteriaService criteriaService)
+      throws RetrieverException, JsonProcessingException {
+    for (ContractingOperatorEnum contractingOperator : ContractingOperatorEnum.values()) {
+      getSearchIndex(criteriaService, contractingOperator);
+    }
+  }
+
+  private FilterIndex getFilterIndex(CriteriaService criteriaService)
+      throws RetrieverException, JsonProcessingException {
+    return getIndex(filterIndexes, criteriaService, () -> FilterIndex.build(criteriaService));
+  }
+
+  /**
+   * Returns the index stored under the key, building it on first use. Concurrent first lookups
+   * share a single build; an index built from data that was invalidated meanwhile is served to
+   * them once but not kept.
+   */
+  private <K, V> V getIndex(Map<K, CompletableFuture<V>> indexes, K key, IndexBuilder<V> builder)
+      throws RetrieverException, JsonProcessingException {
+    CompletableFuture<V> index = indexes.get(key);
+    if (index == null) {
+      CompletableFuture<V> build = new CompletableFuture<>();
+      index = indexes.putIfAbsent(key, build);
+      if (index == null) {
+        long expectedGeneration = generation.get();
+        try {
+          build.complete(builder.build());
+        } catch (Throwable t) {
+          build.completeExceptionally(t);
+          indexes.remove(key, build);
+          throw t;
+        }
+        if (generation.get() != expectedGeneration) indexes.remove(key, build);
+        return build.join();
+      }
+    }
+    return await(index);
+  }
+
+  /** Waits for a build started by another invocation and rethrows its failure. */
+  private static <V> V await(CompletableFuture<V> index)
+      throws RetrieverException, JsonProcessingException {
+    try {
+      return index.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for a criteria index.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RetrieverException) throw (RetrieverException) cause;
+      if (cause instanceof JsonProcessingException) throw (JsonProcessingException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /** Drops every snapshot of the given service. */
+  public void invalidate(CriteriaService criteriaService) {
+    generation.incrementAndGet();
+    snapshots.keySet().removeIf(key -> key.criteriaService == criteriaService);
+    filterIndexes.remove(criteriaService);
+    searchIndexes.keySet().removeIf(key -> key.criteriaService == criteriaService);
+  }
+
+  /** Drops every snapshot. */
+  public void invalidateAll() {
+    generation.incrementAndGet();
+    snapshots.clear();
+    filterIndexes.clear();
+    searchIndexes.clear();
+    typeNames.clear();
+  }
+
+  /**
+   * The filtered criteria lists of one service: for each advertised filter, in upper case, the
+   * snapshots indexed by contracting operator ordinal. Never modified once built.
+   */
+  private static final class FilterIndex {
+    private final Map<String, CachedResponse[]> byFilter;
+
+    private FilterIndex(Map<String, CachedResponse[]> byFilter) {
+      this.byFilter = byFilter;
+    }
+
+    private static FilterIndex build(CriteriaService criteriaService)
+        throws RetrieverException, JsonProcessingException {
+      List<String> filters = criteriaService.getCriteriaFilters();
+      ContractingOperatorEnum[] operators = ContractingOperatorEnum.values();
+      Map<String, CachedResponse[]> byFilter = new HashMap<>(filters.size() * 2);
+      for (String filter : filters) {
+        String key = filter.toUpperCase(Locale.ROOT);
+        if (byFilter.containsKey(key)) continue;
+        CachedResponse[] byOperator = new CachedResponse[operators.length];
+        for (ContractingOperatorEnum operator : operators) {
+          byOperator[operator.ordinal()] =
+              CachedResponse.json(
+                  criteriaService.getFilteredCriteriaList(key, operator), CACHE_CONTROL);
+        }
+        byFilter.put(key, byOperator);
+      }
+      return new FilterIndex(byFilter);
+    }
+  }
+
+  @FunctionalInterface
+  private interface IndexBuilder<V> {
+    V build() throws RetrieverException, JsonProcessingException;
+  }
+
+  @FunctionalInterface
+  private interface Source {
+    Object load() throws RetrieverException;
+  }
+
+  private static final class SnapshotKey {
+    private final CriteriaService criteriaService;
+    private final ContractingOperatorEnum contractingOperator;
+    private final String view;
+
+    private SnapshotKey(
+        CriteriaService criteriaService,
+        ContractingOperatorEnum contractingOperator,
+        String view) {
+      this.criteriaService = criteriaService;
+      this.contractingOperator = contractingOperator;
+      this.view = view;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof SnapshotKey)) return false;
+      SnapshotKey that = (SnapshotKey) o;
+      return criteriaService == that.criteriaService
+          && contractingOperator == that.contractingOperator
+          && view.equals(that.view);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(System.identityHashCode(criteriaService), contractingOperator, view);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
+import eu.esens.espdvcd.designer.util.Errors;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/** Azure Functions with HTTP Trigger. */
+public class ECertisBatchCriteriaInfoFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
+  private static final int MAX_CRITERIA = 500;
+  private static final ObjectReader CRITERIA_READER =
+      JacksonRegistry.getMapper(EDMVersion.V2).readerFor(String[].class);
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final ExecutorService LOOKUPS = createExecutor();
+
+  /**
+   * This function listens at endpoint "/api/ECertisBatchCriteriaInfoFunction". It takes a JSON
+   * array of criterion IDs as body and an optional "lang" query parameter, resolves the evidence
+   * of all criteria in parallel and returns one document with a result or an error per criterion.
+   * Criteria not resolved within the batch timeout are reported with status 504, and a batch that
+   * does not fit in the lookup queue is rejected with 429: curl -d '["id1","id2"]' "{your
+   * host}/api/v2/regulated/criteria/eCertisData/country/GR?lang=el"
+   */
+  @FunctionName("ECertisBatchCriteriaInfoFunction")
+  public HttpResponseMessage run(
+      @HttpTrigger(
+              name = "req",
+              methods = {HttpMethod.POST},
+              route =
+                  "{version}/{qualificationApplicationType}/criteria/eCertisData/country/{countryCode}",
+              authLevel = AuthorizationLevel.ANONYMOUS)
+          HttpRequestMessage<Optional<String>> request,
+      @BindingName("countryCode") String countryCode,
+      final ExecutionContext context) {
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ECertisBatchCriteriaInfoFunction");
+    try {
+      return handle(request, countryCode);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request, String countryCode) {
+    if (request.getBody().isEmpty())
+      return CommonError.EMPTY_BODY.toResponse(request);
+
+    Set<String> criterionIDs = new LinkedHashSet<>();
+    try {
+      String[] requested = CRITERIA_READER.readValue(request.getBody().get());
+      for (String criterionID : requested) {
+        if (criterionID != null && !criterionID.isBlank()) criterionIDs.add(criterionID.trim());
+      }
+    } catch (IOException e) {
+      return CommonError.INVALID_CRITERIA_LIST.toResponse(request);
+    }
+    if (criterionIDs.size() > MAX_CRITERIA)
+      return request
+          .createResponseBuilder(HttpStatus.BAD_REQUEST)
+          .body(
+              Errors.standardError(
+                  400, String.format("At most %d criteria can be requested at once.", MAX_CRITERIA)))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+
+    String lang = request.getQueryParameters().get("lang");
+    boolean translated = lang != null && !lang.isBlank();
+
+    List<String> ids = new ArrayList<>(criterionIDs);
+    List<CompletableFuture<ItemResult>> lookups = new ArrayList<>(ids.size());
+    try {
+      for (String criterionID : ids) {
+        lookups.add(
+            CompletableFuture.supplyAsync(
+                () -> lookup(criterionID, countryCode, translated ? lang : null), LOOKUPS));
+      }
+    } catch (RejectedExecutionException e) {
+      lookups.forEach(lookup -> lookup.cancel(false));
+      return CommonError.OVERLOADED.toResponse(request);
+    }
+    long deadline =
+        System.nanoTime()
+            + TimeUnit.SECONDS.toNanos(ServerlessConfig.getInstance().evidenceBatchTimeout());
+
+    StringWriter json = new StringWriter();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+      generator.writeStartObject();
+      generator.writeStringField("countryCode", countryCode);
+      if (translated) generator.writeStringField("lang", lang);
+      generator.writeArrayFieldStart("results");
+      for (int i = 0; i < ids.size(); i++) {
+        ItemResult result = await(lookups.get(i), deadline);
+        generator.writeStartObject();
+        generator.writeStringField("criterionID", ids.get(i));
+        generator.writeNumberField("status", result.status);
+        generator.writeFieldName(result.status == 200 ? "evidence" : "error");
+        generator.writeRawValue(result.json);
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    } catch (IOException e) {
+      return request
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    }
+
+    return request
+        .createResponseBuilder(HttpStatus.OK)
+        .body(json.toString())
+        .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+        .build();
+  }
+
+  /**
+   * Waits for a lookup until the batch deadline. A lookup that is still queued or running then is
+   * cancelled, which keeps a queued one from running at all, and reported as timed out.
+   */
+  private static ItemResult await(CompletableFuture<ItemResult> lookup, long deadline) {
+    try {
+      return lookup.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      lookup.cancel(false);
+      return new ItemResult(
+          504, Errors.retrieverError("eCertis did not answer within the batch timeout."));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      lookup.cancel(false);
+      return new ItemResult(500, Errors.standardError(500, "Interrupted while waiting."));
+    } catch (ExecutionException | CancellationException e) {
+      return new ItemResult(500, Errors.standardError(500, e.getMessage()));
+    }
+  }
+
+  /** Resolves one criterion, mapping failures to the status the single-item functions use. */
+  private static ItemResult lookup(String criterionID, String countryCode, String lang) {
+    try {
+      EvidenceCache cache = EvidenceCache.getInstance();
+      return new ItemResult(
+          200,
+          lang == null
+              ? cache.getDefaultEvidence(criterionID, countryCode)
+              : cache.getTranslatedEvidence(criterionID, countryCode, lang));
+    } catch (RetrieverException e) {
+      return new ItemResult(502, Errors.retrieverError(e.getMessage()));
+    } catch (EvidenceOverloadedException e) {
+      return new ItemResult(503, Errors.retrieverError(e.getMessage()));
+    } catch (EvidenceTimeoutException e) {
+      return new ItemResult(504, Errors.retrieverError(e.getMessage()));
+    } catch (IllegalArgumentException e) {
+      return new ItemResult(406, CommonError.UNKNOWN_LANGUAGE_OR_COUNTRY.getBody());
+    } catch (Exception e) {
+      return new ItemResult(500, Errors.standardError(500, e.getMessage()));
+    }
+  }
+
+  private static ExecutorService createExecutor() {
+    int parallelism = ServerlessConfig.getInstance().evidenceBatchParallelism();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            30,
+            TimeUnit.SECONDS,
+            // Room for one full batch; beyond that whole batches are turned away
+            new ArrayBlockingQueue<>(MAX_CRITERIA),
+            runnable -> {
+              Thread thread = new Thread(runnable, "ecertis-batch");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  private static final class ItemResult {
+    private final int status;
+    private final String json;
+
+    private ItemResult(int status, String json) {
+      this.status = status;
+      this.json = json;
+    }
+  }
+}
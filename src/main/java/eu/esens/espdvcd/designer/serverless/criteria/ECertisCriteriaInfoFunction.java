@@ -6,9 +6,10 @@ import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
-import eu.esens.espdvcd.designer.service.NationalCriteriaEvidenceService;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.util.Errors;
-import eu.esens.espdvcd.designer.util.JsonUtil;
 import eu.esens.espdvcd.retriever.exception.RetrieverException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -17,6 +18,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ECertisCriteriaInfoFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/ECertisCriteriaInfoFunction". Two ways to invoke it
    * using "curl" command in bash: 1. curl -d "HTTP Body" {your
@@ -36,12 +41,20 @@ public class ECertisCriteriaInfoFunction {
       @BindingName("criterionID") String criterionID,
       @BindingName("countryCode") String countryCode,
       final ExecutionContext context) {
-    NationalCriteriaEvidenceService criteriaEvidenceService =
-            NationalCriteriaEvidenceService.INSTANCE;
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ECertisCriteriaInfoFunction");
+    try {
+      return handle(request, criterionID, countryCode);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request, String criterionID, String countryCode) {
     try {
       return request
           .createResponseBuilder(HttpStatus.OK)
-          .body(JsonUtil.toJson(criteriaEvidenceService.getDefaultEvidence(criterionID, countryCode)))
+          .body(EvidenceCache.getInstance().getDefaultEvidence(criterionID, countryCode))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
     } catch (RetrieverException e) {
@@ -50,12 +63,20 @@ public class ECertisCriteriaInfoFunction {
           .body(Errors.retrieverError(e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
-    } catch (IllegalArgumentException e) {
+    } catch (EvidenceOverloadedException e) {
       return request
-          .createResponseBuilder(HttpStatus.NOT_ACCEPTABLE)
-          .body(Errors.notAcceptableError("Country code does not exist."))
+          .createResponseBuilder(HttpStatus.SERVICE_UNAVAILABLE)
+          .body(Errors.retrieverError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (EvidenceTimeoutException e) {
+      return request
+          .createResponseBuilder(HttpStatus.GATEWAY_TIMEOUT)
+          .body(Errors.retrieverError(e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
+    } catch (IllegalArgumentException e) {
+      return CommonError.UNKNOWN_COUNTRY.toResponse(request);
     } catch (JsonProcessingException e) {
       return request
               .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,25 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.designer.service.NationalCriteriaEvidenceService;
+import eu.esens.espdvcd.designer.util.JsonUtil;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+/** Evidence of the eCertis service, reached through {@link NationalCriteriaEvidenceService}. */
+final class ECertisEvidenceSource implements EvidenceSource {
+
+  @Override
+  public String getDefaultEvidence(String criterionID, String countryCode)
+      throws RetrieverException, JsonProcessingException {
+    return JsonUtil.toJson(
+        NationalCriteriaEvidenceService.INSTANCE.getDefaultEvidence(criterionID, countryCode));
+  }
+
+  @Override
+  public String getTranslatedEvidence(String criterionID, String countryCode, String lang)
+      throws RetrieverException, JsonProcessingException {
+    return JsonUtil.toJson(
+        NationalCriteriaEvidenceService.INSTANCE.getTranslatedEvidence(
+            criterionID, countryCode, lang));
+  }
+}
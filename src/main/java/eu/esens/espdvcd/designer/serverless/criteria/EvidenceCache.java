@@ -0,0 +1,229 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Size-bounded cache of serialized eCertis evidence, keyed by (criterionID, countryCode, lang).
+ *
+ * <p>Entries younger than the TTL are served directly. Older entries are still served while a
+ * background refresh fetches a new copy, until they exceed the stale limit; from then on the
+ * lookup waits for eCertis. Whenever eCertis fails, whatever copy is cached is served instead of
+ * the error.
+ *
+ * <p>Evidence is loaded from the {@link EvidenceSource} the configuration selects.
+ *
+ * <p>Concurrent lookups of the same key share a single in-flight eCertis fetch. Waiters give up
+ * after the configured timeout with an {@link EvidenceTimeoutException}; the fetch itself keeps
+ * running and still fills the cache for later lookups. Fetches run only on the bounded fetcher
+ * pool; when it is full, lookups fail fast with an {@link EvidenceOverloadedException}.
+ */
+public final class EvidenceCache {
+
+  private static final Logger LOGGER = Logger.getLogger(EvidenceCache.class.getName());
+  private static final EvidenceCache INSTANCE = new EvidenceCache(ServerlessConfig.getInstance());
+
+  private final long ttlNanos;
+  private final long staleNanos;
+  private final long timeoutNanos;
+  private final Map<Key, CachedEvidence> entries;
+  private final Map<Key, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+  private final ThreadPoolExecutor fetcher;
+  private final EvidenceSource source;
+
+  private EvidenceCache(ServerlessConfig config) {
+    source = EvidenceSource.fromConfig(config);
+    ttlNanos = TimeUnit.SECONDS.toNanos(config.evidenceCacheTtl());
+    staleNanos = TimeUnit.SECONDS.toNanos(config.evidenceCacheStaleTtl());
+    timeoutNanos = TimeUnit.SECONDS.toNanos(config.evidenceTimeout());
+    int maxEntries = config.evidenceCacheSize();
+    entries =
+        new LinkedHashMap<>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<Key, CachedEvidence> eldest) {
+            return size() > maxEntries;
+          }
+        };
+    fetcher =
+        new ThreadPoolExecutor(
+            0,
+            config.evidenceMaxConcurrency(),
+            30,
+            TimeUnit.SECONDS,
+            new SynchronousQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "ecertis-fetch");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  public static EvidenceCache getInstance() {
+    return INSTANCE;
+  }
+
+  /** Serialized default evidence of a criterion for a country. */
+  public String getDefaultEvidence(String criterionID, String countryCode)
+      throws RetrieverException, JsonProcessingException {
+    return get(
+        new Key(criterionID, countryCode, null),
+        () -> source.getDefaultEvidence(criterionID, countryCode));
+  }
+
+  /** Serialized evidence of a criterion for a country, translated to the given language. */
+  public String getTranslatedEvidence(String criterionID, String countryCode, String lang)
+      throws RetrieverException, JsonProcessingException {
+    return get(
+        new Key(criterionID, countryCode, lang),
+        () -> source.getTranslatedEvidence(criterionID, countryCode, lang));
+  }
+
+  private String get(Key key, Loader loader) throws RetrieverException, JsonProcessingException {
+    CachedEvidence entry;
+    synchronized (entries) {
+      entry = entries.get(key);
+    }
+    long now = System.nanoTime();
+    if (entry != null) {
+      long age = now - entry.loadedAt;
+      if (age < ttlNanos) return entry.json;
+      if (age < staleNanos) {
+        // The stale copy stays in place if the refresh fails; a later lookup retries it
+        fetch(key, loader, false);
+        return entry.json;
+      }
+    }
+
+    try {
+      return await(key, fetch(key, loader, true));
+    } catch (RetrieverException | EvidenceTimeoutException e) {
+      if (entry == null) throw e;
+      LOGGER.warning(
+          "eCertis lookup failed, serving stale evidence for " + key + ": " + e.getMessage());
+      return entry.json;
+    }
+  }
+
+  /**
+   * Returns the in-flight fetch of the key, starting one if there is none. When all fetcher
+   * threads are busy a foreground fetch fails at once with an {@link EvidenceOverloadedException},
+   * rather than calling eCertis on the request thread without a timeout; a background one is
+   * skipped.
+   */
+  private CompletableFuture<String> fetch(Key key, Loader loader, boolean foreground) {
+    CompletableFuture<String> flight = inFlight.get(key);
+    if (flight != null) return flight;
+    CompletableFuture<String> started = new CompletableFuture<>();
+    flight = inFlight.putIfAbsent(key, started);
+    if (flight != null) return flight;
+
+    Runnable task =
+        () -> {
+          try {
+            String json = loader.load();
+            synchronized (entries) {
+              entries.put(key, new CachedEvidence(json, System.nanoTime()));
+            }
+            started.complete(json);
+          } catch (Throwable t) {
+            LOGGER.log(Level.FINE, "Fetching eCertis evidence for " + key + " failed.", t);
+            started.completeExceptionally(t);
+          } finally {
+            inFlight.remove(key, started);
+          }
+        };
+    try {
+      fetcher.execute(task);
+    } catch (RejectedExecutionException e) {
+      inFlight.remove(key, started);
+      if (foreground) {
+        started.completeExceptionally(
+            new EvidenceOverloadedException("All eCertis lookups are busy, skipped " + key + '.'));
+      } else {
+        started.cancel(false);
+      }
+    }
+    return started;
+  }
+
+  private String await(Key key, CompletableFuture<String> flight)
+      throws RetrieverException, JsonProcessingException {
+    try {
+      return flight.get(timeoutNanos, TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      throw new EvidenceTimeoutException("eCertis did not answer in time for " + key + '.');
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EvidenceTimeoutException("Interrupted while waiting for eCertis for " + key + '.');
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RetrieverException) throw (RetrieverException) cause;
+      if (cause instanceof JsonProcessingException) throw (JsonProcessingException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  @FunctionalInterface
+  private interface Loader {
+    String load() throws RetrieverException, JsonProcessingException;
+  }
+
+  private static final class CachedEvidence {
+    private final String json;
+    private final long loadedAt;
+
+    private CachedEvidence(String json, long loadedAt) {
+      this.json = json;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+  private static final class Key {
+    private final String criterionID;
+    private final String countryCode;
+    private final String lang;
+
+    private Key(String criterionID, String countryCode, String lang) {
+      this.criterionID = criterionID;
+      this.countryCode = countryCode;
+      this.lang = lang;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return Objects.equals(criterionID, key.criterionID)
+          && Objects.equals(countryCode, key.countryCode)
+          && Objects.equals(lang, key.lang);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(criterionID, countryCode, lang);
+    }
+
+    @Override
+    public String toString() {
+      return criterionID + '/' + countryCode + (lang == null ? "" : '/' + lang);
+    }
+  }
+}
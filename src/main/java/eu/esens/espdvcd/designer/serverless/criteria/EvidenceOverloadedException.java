@@ -0,0 +1,12 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+/**
+ * Thrown when an evidence lookup cannot start because every eCertis fetcher is busy. It is a kind
+ * of timeout, so a cached copy is still served in its place, but it is reported as 503.
+ */
+public class EvidenceOverloadedException extends EvidenceTimeoutException {
+
+  public EvidenceOverloadedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,37 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+import java.nio.file.Paths;
+
+/**
+ * Where {@link EvidenceCache} loads serialized evidence from: the eCertis service, or a local
+ * stand-in serving recorded responses, selected by {@link ServerlessConfig#evidenceSource()}.
+ */
+interface EvidenceSource {
+
+  /** Serialized default evidence of a criterion for a country. */
+  String getDefaultEvidence(String criterionID, String countryCode)
+      throws RetrieverException, JsonProcessingException;
+
+  /** Serialized evidence of a criterion for a country, translated to the given language. */
+  String getTranslatedEvidence(String criterionID, String countryCode, String lang)
+      throws RetrieverException, JsonProcessingException;
+
+  static EvidenceSource fromConfig(ServerlessConfig config) {
+    String directory = config.evidenceStandInDirectory();
+    switch (config.evidenceSource().toLowerCase()) {
+      case "standin":
+        return new StandInEvidenceSource(directory == null ? null : Paths.get(directory), config);
+      case "record":
+        if (directory == null)
+          throw new IllegalStateException(
+              "ESPD_ECERTIS_STANDIN_DIR must be set to record eCertis responses.");
+        return new RecordingEvidenceSource(new ECertisEvidenceSource(), Paths.get(directory));
+      default:
+        return new ECertisEvidenceSource();
+    }
+  }
+}
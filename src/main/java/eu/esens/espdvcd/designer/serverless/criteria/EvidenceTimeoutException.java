@@ -0,0 +1,9 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+/** Thrown when eCertis does not answer an evidence lookup within the configured timeout. */
+public class EvidenceTimeoutException extends RuntimeException {
+
+  public EvidenceTimeoutException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,53 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves evidence of another source and saves every answer as a fixture the stand-in can replay.
+ */
+final class RecordingEvidenceSource implements EvidenceSource {
+
+  private static final Logger LOGGER = Logger.getLogger(RecordingEvidenceSource.class.getName());
+
+  private final EvidenceSource delegate;
+  private final Path directory;
+
+  RecordingEvidenceSource(EvidenceSource delegate, Path directory) {
+    this.delegate = delegate;
+    this.directory = directory;
+  }
+
+  @Override
+  public String getDefaultEvidence(String criterionID, String countryCode)
+      throws RetrieverException, JsonProcessingException {
+    return record(
+        delegate.getDefaultEvidence(criterionID, countryCode),
+        StandInEvidenceSource.fixtureName(criterionID, countryCode, null));
+  }
+
+  @Override
+  public String getTranslatedEvidence(String criterionID, String countryCode, String lang)
+      throws RetrieverException, JsonProcessingException {
+    return record(
+        delegate.getTranslatedEvidence(criterionID, countryCode, lang),
+        StandInEvidenceSource.fixtureName(criterionID, countryCode, lang));
+  }
+
+  private String record(String json, String fixtureName) {
+    try {
+      Files.createDirectories(directory);
+      Files.write(directory.resolve(fixtureName), json.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not record eCertis fixture " + fixtureName + ".", e);
+    }
+    return json;
+  }
+}
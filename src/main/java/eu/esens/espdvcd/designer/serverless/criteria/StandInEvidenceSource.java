@@ -0,0 +1,121 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A local stand-in for eCertis that replays recorded responses, for benchmarking and testing
+ * without network access.
+ *
+ * <p>Fixtures are JSON files named {@code <criterionID>_<countryCode>[_<lang>].json}. A lookup
+ * falls back to {@code <criterionID>.json} and then to {@code default.json}, so a handful of
+ * recordings covers any criterion. They are read from the configured directory, or from the
+ * bundled {@code /ecertis-standin/} resources when none is set.
+ *
+ * <p>Every lookup waits for a log-normally distributed latency with the configured median and
+ * 99th percentile. A configurable share of lookups fails as eCertis errors do, and another share
+ * hangs for a long time before answering, like a slow-loris upstream.
+ */
+final class StandInEvidenceSource implements EvidenceSource {
+
+  private static final String BUNDLED_FIXTURES = "/ecertis-standin/";
+  private static final String DEFAULT_FIXTURE = "default.json";
+  /** The 99th percentile of the standard normal distribution. */
+  private static final double Z_99 = 2.326;
+
+  private final Path directory;
+  private final double mu;
+  private final double sigma;
+  private final double errorRate;
+  private final double slowRate;
+  private final long slowMillis;
+
+  StandInEvidenceSource(Path directory, ServerlessConfig config) {
+    this.directory = directory;
+    long median = Math.max(1, config.evidenceStandInLatencyMedian());
+    long p99 = Math.max(median, config.evidenceStandInLatencyP99());
+    this.mu = Math.log(median);
+    this.sigma = Math.log((double) p99 / median) / Z_99;
+    this.errorRate = config.evidenceStandInErrorRate();
+    this.slowRate = config.evidenceStandInSlowRate();
+    this.slowMillis = TimeUnit.SECONDS.toMillis(config.evidenceStandInSlowSeconds());
+  }
+
+  @Override
+  public String getDefaultEvidence(String criterionID, String countryCode)
+      throws RetrieverException {
+    return serve(criterionID, countryCode, null);
+  }
+
+  @Override
+  public String getTranslatedEvidence(String criterionID, String countryCode, String lang)
+      throws RetrieverException {
+    return serve(criterionID, countryCode, lang);
+  }
+
+  /** The fixture file name of a lookup; only safe characters end up in it. */
+  static String fixtureName(String criterionID, String countryCode, String lang) {
+    String name = criterionID + '_' + countryCode + (lang == null ? "" : '_' + lang);
+    return name.replaceAll("[^A-Za-z0-9_-]", "-") + ".json";
+  }
+
+  private String serve(String criterionID, String countryCode, String lang)
+      throws RetrieverException {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    double outcome = random.nextDouble();
+    if (outcome < slowRate) {
+      sleep(slowMillis);
+    } else {
+      sleep((long) Math.exp(mu + sigma * random.nextGaussian()));
+    }
+    if (outcome >= slowRate && outcome < slowRate + errorRate)
+      throw new RetrieverException("eCertis stand-in: injected failure for " + criterionID + '.');
+
+    List<String> candidates = new ArrayList<>(4);
+    if (lang != null) candidates.add(fixtureName(criterionID, countryCode, lang));
+    candidates.add(fixtureName(criterionID, countryCode, null));
+    candidates.add(criterionID.replaceAll("[^A-Za-z0-9_-]", "-") + ".json");
+    candidates.add(DEFAULT_FIXTURE);
+    for (String candidate : candidates) {
+      String json = read(candidate);
+      if (json != null) return json;
+    }
+    throw new RetrieverException("eCertis stand-in: no fixture for " + criterionID + '.');
+  }
+
+  private String read(String fixture) throws RetrieverException {
+    try {
+      if (directory != null) {
+        Path file = directory.resolve(fixture);
+        return Files.isRegularFile(file)
+            ? new String(Files.readAllBytes(file), StandardCharsets.UTF_8)
+            : null;
+      }
+      try (InputStream in =
+          StandInEvidenceSource.class.getResourceAsStream(BUNDLED_FIXTURES + fixture)) {
+        return in == null ? null : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+    } catch (IOException e) {
+      throw new RetrieverException("eCertis stand-in: could not read " + fixture + '.', e);
+    }
+  }
+
+  private static void sleep(long millis) throws RetrieverException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RetrieverException("eCertis stand-in: interrupted.", e);
+    }
+  }
+}
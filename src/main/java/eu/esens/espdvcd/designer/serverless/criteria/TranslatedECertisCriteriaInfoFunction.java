@@ -6,9 +6,10 @@ import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.BindingName;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
-import eu.esens.espdvcd.designer.service.NationalCriteriaEvidenceService;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.util.Errors;
-import eu.esens.espdvcd.designer.util.JsonUtil;
 import eu.esens.espdvcd.retriever.exception.RetrieverException;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -17,6 +18,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class TranslatedECertisCriteriaInfoFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/TranslatedECertisCriteriaInfoFunction". Two ways to
    * invoke it using "curl" command in bash: 1. curl -d "HTTP Body" {your
@@ -38,13 +43,23 @@ public class TranslatedECertisCriteriaInfoFunction {
       @BindingName("countryCode") String countryCode,
       @BindingName("lang") String lang,
       final ExecutionContext context) {
+    Metrics.Invocation invocation = Metrics.getInstance().begin("TranslatedECertisCriteriaInfoFunction");
+    try {
+      return handle(request, criterionID, countryCode, lang);
+    } finally {
+      invocation.end();
+    }
+  }
 
-    NationalCriteriaEvidenceService criteriaEvidenceService =
-            NationalCriteriaEvidenceService.INSTANCE;
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<String>> request,
+      String criterionID,
+      String countryCode,
+      String lang) {
     try {
       return request
           .createResponseBuilder(HttpStatus.OK)
-          .body(JsonUtil.toJson(criteriaEvidenceService.getTranslatedEvidence(criterionID, countryCode, lang)))
+          .body(EvidenceCache.getInstance().getTranslatedEvidence(criterionID, countryCode, lang))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
     } catch (RetrieverException e) {
@@ -53,12 +68,20 @@ public class TranslatedECertisCriteriaInfoFunction {
           .body(Errors.retrieverError(e.getMessage()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
-    } catch (IllegalArgumentException e) {
+    } catch (EvidenceOverloadedException e) {
       return request
-              .createResponseBuilder(HttpStatus.NOT_ACCEPTABLE)
-              .body(Errors.notAcceptableError("Language or country code does not exist."))
-              .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-              .build();
+          .createResponseBuilder(HttpStatus.SERVICE_UNAVAILABLE)
+          .body(Errors.retrieverError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (EvidenceTimeoutException e) {
+      return request
+          .createResponseBuilder(HttpStatus.GATEWAY_TIMEOUT)
+          .body(Errors.retrieverError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (IllegalArgumentException e) {
+      return CommonError.UNKNOWN_LANGUAGE_OR_COUNTRY.toResponse(request);
     } catch (JsonProcessingException e) {
       return request
               .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -0,0 +1,347 @@
+package eu.esens.espdvcd.designer.serverless.export;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import com.typesafe.config.ConfigException;
+import eu.esens.espdvcd.builder.exception.BuilderException;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.exception.ValidationException;
+import eu.esens.espdvcd.designer.serverless.util.AdmissionController;
+import eu.esens.espdvcd.designer.serverless.util.ArtefactDumper;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.EnumLookup;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
+import eu.esens.espdvcd.designer.service.ExportESPDService;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.designer.util.Errors;
+import eu.esens.espdvcd.model.ESPDRequest;
+import eu.esens.espdvcd.model.ESPDResponse;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+import org.xml.sax.SAXException;
+
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/** Azure Functions with HTTP Trigger. */
+public class BatchExportESPDFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
+  private static final int MAX_DOCUMENTS = 64;
+  private static final ExecutorService RENDERERS = createExecutor();
+
+  /**
+   * This function listens at endpoint "/api/BatchExportESPDFunction". It renders the posted ESPD
+   * for every requested language and export type in parallel and returns all documents in one ZIP
+   * archive: curl -d @espd.json -H "Content-Type: application/json" "{your
+   * host}/api/v2/espd/request/batch?language=en,el&exportType=pdf,xml"
+   */
+  @FunctionName("BatchExportESPDFunction")
+  public HttpResponseMessage run(
+      @HttpTrigger(
+              name = "req",
+              methods = {HttpMethod.POST},
+              route = "{version}/espd/{artefactType}/batch",
+              dataType = "binary",
+              authLevel = AuthorizationLevel.ANONYMOUS)
+          HttpRequestMessage<Optional<byte[]>> request,
+      @BindingName("version") String versionParam,
+      @BindingName("artefactType") String artefactTypeParam,
+      final ExecutionContext context) {
+    Metrics.Invocation invocation = Metrics.getInstance().begin("BatchExportESPDFunction");
+    try {
+      return handle(request, versionParam, artefactTypeParam, context, invocation);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<byte[]>> request,
+      String versionParam,
+      String artefactTypeParam,
+      ExecutionContext context,
+      Metrics.Invocation invocation) {
+    Reservation reservation = null;
+    try {
+      EDMVersion version = RequestPipeline.version(versionParam);
+      if (version == null) return CommonError.UNSUPPORTED_VERSION.toResponse(request);
+      ExportESPDService service = RequestPipeline.exportService(version);
+
+      RequestPipeline.ArtefactType artefactType = RequestPipeline.artefactType(artefactTypeParam);
+      if (artefactType == null) return CommonError.UNSUPPORTED_ARTEFACT_TYPE.toResponse(request);
+      boolean isResponse = artefactType.isResponse();
+
+      Set<EULanguageCodeEnum> languages =
+          parseList(EULanguageCodeEnum.class, request.getQueryParameters().get("language"));
+      if (languages == null) return CommonError.INVALID_LANGUAGES.toResponse(request);
+
+      Set<ExportType> exportTypes =
+          parseList(ExportType.class, request.getQueryParameters().get("exportType"));
+      if (exportTypes == null) return CommonError.INVALID_EXPORT_TYPES.toResponse(request);
+
+      if (languages.size() * exportTypes.size() > MAX_DOCUMENTS)
+        return request
+            .createResponseBuilder(HttpStatus.BAD_REQUEST)
+            .body(
+                Errors.standardError(
+                    400, String.format("At most %d documents can be exported at once.", MAX_DOCUMENTS)))
+            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+            .build();
+
+      // Checked before the body is hashed
+      if (AdmissionController.getInstance().isTooLarge(request))
+        return CommonError.PAYLOAD_TOO_LARGE.toResponse(request);
+
+      // Renders run in parallel, each on its own copy of the model
+      ServerlessConfig config = ServerlessConfig.getInstance();
+      int parallelRenders =
+          Math.min(languages.size() * exportTypes.size(), config.exportBatchParallelism());
+      reservation =
+          new Reservation(request, config.admissionExportFactor() * Math.max(1, parallelRenders));
+      Reservation heap = reservation;
+
+      if (request.getBody().isEmpty()) return CommonError.EMPTY_BODY.toResponse(request);
+
+      String contentType = request.getHeaders().get(HttpHeaders.CONTENT_TYPE.toLowerCase());
+      if (contentType == null
+          || !contentType.contains(ContentType.APPLICATION_JSON.getMimeType())) {
+        context.getLogger().warning("Got unexpected content-type: " + contentType);
+        return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
+      }
+
+      ArtefactDumper dumper = ArtefactDumper.getInstance();
+      if (dumper.isEnabled() && !dumper.dump(ArtefactDumper.Kind.JSON, request.getBody().get())) {
+        context.getLogger().warning("Dumping of artefacts is enabled, but the dump queue is full.");
+      }
+
+      String artefactName = isResponse ? "response" : "request";
+      List<String> entryNames = new ArrayList<>();
+      List<Future<byte[]>> renders = new ArrayList<>();
+      AtomicBoolean abandoned = new AtomicBoolean();
+      try {
+        // The document is hashed once for all renders. Each render that misses the cache reads
+        // its own copy, since the export services may modify the model while rendering it
+        byte[] body = request.getBody().get();
+        invocation.size("requestBytes", body.length);
+        String digest = ExportResultCache.digest(body);
+        invocation.phase("digest");
+        Reader document =
+            () ->
+                isResponse
+                    ? JacksonRegistry.getResponseReader(version).readValue(body)
+                    : JacksonRegistry.getRequestReader(version).readValue(body);
+
+        for (EULanguageCodeEnum language : languages) {
+          for (ExportType exportType : exportTypes) {
+            Callable<byte[]> render =
+                () ->
+                    ExportResultCache.getInstance()
+                        .get(
+                            digest,
+                            version,
+                            isResponse,
+                            exportType,
+                            language,
+                            () -> {
+                              // Only a render needs the heap, so cached results are served
+                              // unreserved
+                              heap.acquire();
+                              try (InputStream export =
+                                  isResponse
+                                      ? service.exportESPDResponseAs(
+                                          (ESPDResponse) document.read(), language, exportType)
+                                      : service.exportESPDRequestAs(
+                                          (ESPDRequest) document.read(), language, exportType)) {
+                                return export.readAllBytes();
+                              }
+                            });
+            entryNames.add(
+                String.format(
+                    "%s_%s.%s",
+                    artefactName, language.name().toLowerCase(), exportType.name().toLowerCase()));
+            renders.add(RENDERERS.submit(() -> abandoned.get() ? null : render.call()));
+          }
+        }
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+          for (int i = 0; i < renders.size(); i++) {
+            byte[] rendered = await(renders.get(i));
+            zip.putNextEntry(new ZipEntry(entryNames.get(i)));
+            zip.write(rendered);
+            zip.closeEntry();
+          }
+        }
+        invocation.phase("renderAndZip");
+        invocation.size("responseBytes", archive.size());
+
+        return request
+            .createResponseBuilder(HttpStatus.OK)
+            .body(archive.toByteArray())
+            .header(HttpHeaders.CONTENT_TYPE, "application/zip")
+            .header(
+                "Content-Disposition", String.format("attachment; filename=\"%s.zip\";", artefactName))
+            .build();
+      } catch (NotAdmittedException e) {
+        return e.getPermit().toResponse(request);
+      } catch (IOException e) {
+        return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                .body(Errors.standardError(400, "Error occurred while converting a JSON object to XML. " + e.getMessage()))
+                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+                .build();
+      } catch (ValidationException e) {
+        return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                .body(Errors.validationError(e.getMessage(), e.getResults()))
+                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+                .build();
+      } catch (UnsupportedOperationException e) {
+        return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                .body(Errors.notAcceptableError(e.getMessage()))
+                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+                .build();
+      } catch (BuilderException | JAXBException | SAXException | ConfigException ex) {
+        return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Errors.standardError(500, ex.getMessage()))
+                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+                .build();
+      } finally {
+        // Once one document failed the others are of no use, so renders not started yet are
+        // skipped. Running renders are not interrupted, since other exports of the same document
+        // may be waiting for them, and are waited for so that the reservation covers them until
+        // they end. Future.cancel would not do: a cancelled future does not wait for its task
+        abandoned.set(true);
+        awaitAll(renders);
+      }
+    } finally {
+      if (reservation != null) reservation.release();
+    }
+  }
+
+  /** Waits for a render and rethrows its failure as the exception the service raised. */
+  private static byte[] await(Future<byte[]> render)
+      throws IOException, ValidationException, BuilderException, JAXBException, SAXException {
+    try {
+      return render.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while rendering the export.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof ValidationException) throw (ValidationException) cause;
+      if (cause instanceof BuilderException) throw (BuilderException) cause;
+      if (cause instanceof JAXBException) throw (JAXBException) cause;
+      if (cause instanceof SAXException) throw (SAXException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * The heap of one batch, reserved by the first render that misses the cache and shared by the
+   * others. A refusal is rethrown to every render of the batch.
+   */
+  private static final class Reservation {
+    private final HttpRequestMessage<?> request;
+    private final long bytesPerBodyByte;
+    private AdmissionController.Permit permit;
+
+    private Reservation(HttpRequestMessage<?> request, long bytesPerBodyByte) {
+      this.request = request;
+      this.bytesPerBodyByte = bytesPerBodyByte;
+    }
+
+    private synchronized void acquire() {
+      if (permit == null)
+        permit = AdmissionController.getInstance().reserve(request, bytesPerBodyByte);
+      if (!permit.isGranted()) throw new NotAdmittedException(permit);
+    }
+
+    private synchronized void release() {
+      if (permit != null) permit.release();
+    }
+  }
+
+  /** Waits for every task to end, however it ends, and restores an interrupt afterwards. */
+  private static void awaitAll(List<? extends Future<?>> tasks) {
+    boolean interrupted = false;
+    for (Future<?> task : tasks) {
+      while (true) {
+        try {
+          task.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  /** Deserializes a fresh copy of the posted document on every call. */
+  @FunctionalInterface
+  private interface Reader {
+    Object read() throws IOException;
+  }
+
+  /** Parses a comma-separated list of constants, or returns {@code null} if any is unknown. */
+  private static <E extends Enum<E>> Set<E> parseList(Class<E> type, String list) {
+    if (list == null) return null;
+    Set<E> constants = new LinkedHashSet<>();
+    for (String name : list.split(",")) {
+      E constant = EnumLookup.parse(type, name.trim());
+      if (constant == null) return null;
+      constants.add(constant);
+    }
+    return constants;
+  }
+
+  private static ExecutorService createExecutor() {
+    int parallelism = ServerlessConfig.getInstance().exportBatchParallelism();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            30,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+              Thread thread = new Thread(runnable, "espd-batch-export");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+}
@@ -9,18 +9,21 @@ import com.typesafe.config.ConfigException;
 import eu.esens.espdvcd.builder.exception.BuilderException;
 import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
 import eu.esens.espdvcd.designer.exception.ValidationException;
-import eu.esens.espdvcd.designer.serverless.util.APIUtils;
+import eu.esens.espdvcd.designer.serverless.util.AdmissionController;
+import eu.esens.espdvcd.designer.serverless.util.ArtefactDumper;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.EnumLookup;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.ExportESPDService;
-import eu.esens.espdvcd.designer.service.ExportESPDV1Service;
-import eu.esens.espdvcd.designer.service.ExportESPDV2Service;
 import eu.esens.espdvcd.designer.typeEnum.ExportType;
-import eu.esens.espdvcd.designer.util.AppConfig;
 import eu.esens.espdvcd.designer.util.Errors;
 import eu.esens.espdvcd.designer.util.JsonUtil;
 import eu.esens.espdvcd.model.ESPDRequest;
-import eu.esens.espdvcd.model.ESPDRequestImpl;
 import eu.esens.espdvcd.model.ESPDResponse;
-import eu.esens.espdvcd.model.ESPDResponseImpl;
 import eu.esens.espdvcd.schema.enums.EDMVersion;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -28,19 +31,16 @@ import org.apache.http.protocol.HTTP;
 import org.xml.sax.SAXException;
 
 import javax.xml.bind.JAXBException;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
-import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ExportESPDFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/ExportESPDFunction". Two ways to invoke it using
    * "curl" command in bash: 1. curl -d "HTTP Body" {your host}/api/ExportESPDFunction 2. curl
@@ -54,125 +54,114 @@ public class ExportESPDFunction {
               name = "req",
               methods = {HttpMethod.POST},
               route = "{version}/espd/{artefactType}/{exportType}",
+              dataType = "binary",
               authLevel = AuthorizationLevel.ANONYMOUS)
-          HttpRequestMessage<Optional<String>> request,
+          HttpRequestMessage<Optional<byte[]>> request,
       @BindingName("version") String versionParam,
       @BindingName("artefactType") String artefactTypeParam,
       @BindingName("exportType") String exportTypeParam,
       final ExecutionContext context) {
-
-    EDMVersion version;
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ExportESPDFunction");
     try {
-      version = EDMVersion.valueOf(versionParam.toUpperCase());
-    } catch (IllegalArgumentException e) {
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(
-              Errors.standardError(
-                  400, String.format("Version %s is not supported.", versionParam)))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
+      return handle(request, versionParam, artefactTypeParam, exportTypeParam, context, invocation);
+    } finally {
+      invocation.end();
     }
+  }
 
-    ExportESPDService service;
-    switch (version) {
-      case V1:
-        service = ExportESPDV1Service.getInstance();
-        break;
-      case V2:
-        service = ExportESPDV2Service.getInstance();
-        break;
-      default:
-        throw new IllegalArgumentException("Version supplied cannot be null.");
-    }
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<byte[]>> request,
+      String versionParam,
+      String artefactTypeParam,
+      String exportTypeParam,
+      ExecutionContext context,
+      Metrics.Invocation invocation) {
+    EDMVersion version = RequestPipeline.version(versionParam);
+    if (version == null) return CommonError.UNSUPPORTED_VERSION.toResponse(request);
+    ExportESPDService service = RequestPipeline.exportService(version);
 
-    ExportType exportType;
-    InputStream streamToReturn;
-    try {
-      exportType = ExportType.valueOf(exportTypeParam.toUpperCase());
-    } catch (IllegalArgumentException e) {
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(
-              Errors.standardError(
-                  400, String.format("Export type %s is not supported.", exportTypeParam)))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
-    }
+    RequestPipeline.ArtefactType artefactType = RequestPipeline.artefactType(artefactTypeParam);
+    if (artefactType == null) return CommonError.UNSUPPORTED_ARTEFACT_TYPE.toResponse(request);
 
-    EULanguageCodeEnum languageCode;
-    try {
-      languageCode =
-          EULanguageCodeEnum.valueOf(request.getQueryParameters().get("language").toUpperCase());
-    } catch (IllegalArgumentException | NullPointerException e) {
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(Errors.standardError(400, "Language code is missing or is invalid."))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
-    }
+    ExportType exportType = EnumLookup.parse(ExportType.class, exportTypeParam);
+    if (exportType == null) return CommonError.UNSUPPORTED_EXPORT_TYPE.toResponse(request);
 
-    if (request.getBody().isEmpty())
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(Errors.standardError(400, "Request body must not be empty."))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
+    EULanguageCodeEnum languageCode =
+        EnumLookup.parse(EULanguageCodeEnum.class, request.getQueryParameters().get("language"));
+    if (languageCode == null) return CommonError.INVALID_LANGUAGE.toResponse(request);
 
-    if (request
-        .getHeaders()
-        .get(HttpHeaders.CONTENT_TYPE.toLowerCase())
-        .contains(ContentType.APPLICATION_JSON.getMimeType())) {
-      if (AppConfig.getInstance().isArtefactDumpingEnabled()) {
-        try {
-          Files.createDirectories(
-              Paths.get(AppConfig.getInstance().dumpIncomingArtefactsLocation() + "/json/"));
-          File dumpedFile =
-              new File(
-                  AppConfig.getInstance().dumpIncomingArtefactsLocation()
-                      + "/json/"
-                      + ZonedDateTime.now().format(DateTimeFormatter.ofPattern("uuuuMMddHHmmss"))
-                      + ".json");
-          byte[] jsonStream = request.getBody().get().getBytes(StandardCharsets.UTF_8);
-          Files.write(dumpedFile.toPath(), jsonStream, StandardOpenOption.CREATE);
-          context
-              .getLogger()
-              .info("Dumping exported json artefact to " + dumpedFile.getAbsolutePath());
-        } catch (IOException e) {
-          context.getLogger().warning("Dumping of artefacts is enabled, but it failed.");
-          context.getLogger().warning(e.getMessage());
-        }
+    // Checked before the body is dumped or hashed
+    if (AdmissionController.getInstance().isTooLarge(request))
+      return CommonError.PAYLOAD_TOO_LARGE.toResponse(request);
+
+    if (request.getBody().isEmpty()) return CommonError.EMPTY_BODY.toResponse(request);
+
+    String contentType = request.getHeaders().get(HttpHeaders.CONTENT_TYPE.toLowerCase());
+    if (contentType != null && contentType.contains(ContentType.APPLICATION_JSON.getMimeType())) {
+      ArtefactDumper dumper = ArtefactDumper.getInstance();
+      if (dumper.isEnabled() && !dumper.dump(ArtefactDumper.Kind.JSON, request.getBody().get())) {
+        context.getLogger().warning("Dumping of artefacts is enabled, but the dump queue is full.");
       }
 
       try {
-        if (artefactTypeParam.equalsIgnoreCase("request")) {
-          // Handle request
-          ESPDRequest document;
-          document = APIUtils.getJacksonMapper(version).readValue(request.getBody().get(), ESPDRequestImpl.class);
-          streamToReturn = service.exportESPDRequestAs(document, languageCode, exportType);
-        } else if (artefactTypeParam.equalsIgnoreCase("response")) {
-          // Handle response
-          ESPDResponse document;
-          document = APIUtils.getJacksonMapper(version).readValue(request.getBody().get(), ESPDResponseImpl.class);
-          streamToReturn = service.exportESPDResponseAs(document, languageCode, exportType);
-        } else {
-
-          return request
-                  .createResponseBuilder(HttpStatus.BAD_REQUEST)
-                  .body(Errors.standardError(400, "Document type (request or response) must be specified."))
-                  .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-                  .build();
-        }
+        byte[] body = request.getBody().get();
+        invocation.size("requestBytes", body.length);
+        String digest = ExportResultCache.digest(body);
+        invocation.phase("digest");
+        byte[] rendered =
+            ExportResultCache.getInstance()
+                .get(
+                    digest,
+                    version,
+                    artefactType.isResponse(),
+                    exportType,
+                    languageCode,
+                    () -> {
+                      // Only a render needs the heap, so cached results are served unreserved
+                      long factor = ServerlessConfig.getInstance().admissionExportFactor();
+                      AdmissionController.Permit permit =
+                          AdmissionController.getInstance().reserve(request, factor);
+                      try {
+                        if (!permit.isGranted()) throw new NotAdmittedException(permit);
+                        InputStream export;
+                        if (artefactType.isResponse()) {
+                          ESPDResponse document =
+                              JacksonRegistry.getResponseReader(version).readValue(body);
+                          invocation.phase("deserialize");
+                          export =
+                              service.exportESPDResponseAs(document, languageCode, exportType);
+                        } else {
+                          ESPDRequest document =
+                              JacksonRegistry.getRequestReader(version).readValue(body);
+                          invocation.phase("deserialize");
+                          export =
+                              service.exportESPDRequestAs(document, languageCode, exportType);
+                        }
+                        invocation.phase("export");
+                        byte[] bytes;
+                        try (export) {
+                          bytes = export.readAllBytes();
+                        }
+                        invocation.phase("readBytes");
+                        return bytes;
+                      } finally {
+                        permit.release();
+                      }
+                    });
+        invocation.size("responseBytes", rendered.length);
         return request
                 .createResponseBuilder(HttpStatus.OK)
-                .body(streamToReturn.readAllBytes())
+                .body(rendered)
                 .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_OCTET_STREAM.getMimeType())
                 .header(
                         "Content-Disposition",
                         String.format(
                                 "attachment; filename=\"%s.%s\";",
-                                artefactTypeParam.toLowerCase(), exportType.name().toLowerCase()))
+                                artefactType.name().toLowerCase(),
+                                exportType.name().toLowerCase()))
                 .build();
+      } catch (NotAdmittedException e) {
+        return e.getPermit().toResponse(request);
       } catch (IOException e) {
 
                           return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
@@ -197,11 +186,8 @@ public class ExportESPDFunction {
                 .build();
       }
     } else {
-      context.getLogger().warning("Got unexpected content-type: " + request.getHeaders().get(HttpHeaders.CONTENT_TYPE));
-      return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
-              .body(Errors.unacceptableContentType())
-              .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-              .build();
+      context.getLogger().warning("Got unexpected content-type: " + contentType);
+      return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
     }
   }
 }
@@ -0,0 +1,256 @@
+package eu.esens.espdvcd.designer.serverless.export;
+
+import eu.esens.espdvcd.builder.exception.BuilderException;
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.exception.ValidationException;
+import eu.esens.espdvcd.designer.serverless.util.Digests;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+import org.xml.sax.SAXException;
+
+import javax.xml.bind.JAXBException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Rendered exports, addressed by the digest of the posted ESPD JSON together with the
+ * version, artefact type, export type and language. Results are kept in a byte-bounded LRU and,
+ * when configured, spilled to local disk on eviction. Concurrent exports of the same document
+ * share a single render, and its failure, unless the rendering caller is refused admission.
+ */
+final class ExportResultCache {
+
+  private static final Logger LOGGER = Logger.getLogger(ExportResultCache.class.getName());
+  private static final ExportResultCache INSTANCE = fromConfig();
+
+  private final long maxMemoryBytes;
+  private final long maxDiskBytes;
+  private final Path spillDirectory;
+  private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+  private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>(64, 0.75f, true);
+  private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+  private long memoryBytes;
+  private long diskBytes;
+
+  ExportResultCache(long maxMemoryBytes, long maxDiskBytes, Path spillDirectory) {
+    this.maxMemoryBytes = maxMemoryBytes;
+    this.maxDiskBytes = maxDiskBytes;
+    this.spillDirectory = spillDirectory;
+    if (maxDiskBytes > 0) clearSpillDirectory();
+  }
+
+  private static ExportResultCache fromConfig() {
+    ServerlessConfig config = ServerlessConfig.getInstance();
+    return new ExportResultCache(
+        config.exportCacheBytes(),
+        config.exportCacheDiskBytes(),
+        Paths.get(config.exportCacheDirectory()));
+  }
+
+  static ExportResultCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the hex SHA-256 digest of the posted bytes. The body is not normalized: parsing it
+   * would cost as much as the cache saves, and could map distinct decimals to the same key.
+   */
+  static String digest(byte[] json) {
+    return Digests.sha256Hex(json);
+  }
+
+  /**
+   * Returns the rendered export of the document, rendering it only if no cached or in-flight
+   * result exists for the same key.
+   */
+  byte[] get(
+      String documentDigest,
+      EDMVersion version,
+      boolean isResponse,
+      ExportType exportType,
+      EULanguageCodeEnum language,
+      Renderer renderer)
+      throws IOException, ValidationException, BuilderException, JAXBException, SAXException {
+    String key =
+        String.join(
+            "-",
+            documentDigest,
+            version.name(),
+            isResponse ? "response" : "request",
+            exportType.name(),
+            language.name());
+    if (maxMemoryBytes <= 0 && maxDiskBytes <= 0) return renderer.render();
+
+    while (true) {
+      byte[] cached = lookup(key);
+      if (cached != null) return cached;
+
+      CompletableFuture<byte[]> render = new CompletableFuture<>();
+      CompletableFuture<byte[]> existing = inFlight.putIfAbsent(key, render);
+      if (existing != null) {
+        byte[] rendered = await(existing);
+        if (rendered != null) return rendered;
+        // The rendering caller was not admitted, which says nothing about this one
+        continue;
+      }
+      try {
+        byte[] rendered = renderer.render();
+        store(key, rendered);
+        render.complete(rendered);
+        return rendered;
+      } catch (NotAdmittedException e) {
+        // Removed first, so that the waiters woken up do not find this render again
+        inFlight.remove(key, render);
+        render.complete(null);
+        throw e;
+      } catch (Throwable t) {
+        render.completeExceptionally(t);
+        throw t;
+      } finally {
+        inFlight.remove(key, render);
+      }
+    }
+  }
+
+  private byte[] lookup(String key) {
+    synchronized (this) {
+      byte[] cached = memory.get(key);
+      if (cached != null || disk.get(key) == null) return cached;
+    }
+    try {
+      byte[] spilled = Files.readAllBytes(spillFile(key));
+      store(key, spilled);
+      return spilled;
+    } catch (IOException e) {
+      synchronized (this) {
+        Long size = disk.remove(key);
+        if (size != null) diskBytes -= size;
+      }
+      return null;
+    }
+  }
+
+  private void store(String key, byte[] rendered) {
+    if (rendered.length > maxMemoryBytes) {
+      spill(key, rendered);
+      return;
+    }
+    Map<String, byte[]> evicted = new LinkedHashMap<>();
+    synchronized (this) {
+      byte[] previous = memory.put(key, rendered);
+      if (previous != null) memoryBytes -= previous.length;
+      memoryBytes += rendered.length;
+      Iterator<Map.Entry<String, byte[]>> eldest = memory.entrySet().iterator();
+      while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+        Map.Entry<String, byte[]> entry = eldest.next();
+        eldest.remove();
+        memoryBytes -= entry.getValue().length;
+        evicted.put(entry.getKey(), entry.getValue());
+      }
+    }
+    // Disk writes happen outside the lock, so lookups never wait for the disk
+    evicted.forEach(this::spill);
+  }
+
+  private void spill(String key, byte[] rendered) {
+    if (rendered.length > maxDiskBytes) return;
+    synchronized (this) {
+      if (disk.containsKey(key)) return;
+    }
+    try {
+      Files.createDirectories(spillDirectory);
+      Path target = spillFile(key);
+      Path temp = Files.createTempFile(spillDirectory, key, ".tmp");
+      Files.write(temp, rendered);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not spill a rendered export to disk.", e);
+      return;
+    }
+    Map<String, Long> evicted = new LinkedHashMap<>();
+    synchronized (this) {
+      Long previous = disk.put(key, (long) rendered.length);
+      if (previous != null) diskBytes -= previous;
+      diskBytes += rendered.length;
+      Iterator<Map.Entry<String, Long>> eldest = disk.entrySet().iterator();
+      while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+        Map.Entry<String, Long> entry = eldest.next();
+        eldest.remove();
+        diskBytes -= entry.getValue();
+        evicted.put(entry.getKey(), entry.getValue());
+      }
+    }
+    for (String evictedKey : evicted.keySet()) {
+      try {
+        Files.deleteIfExists(spillFile(evictedKey));
+      } catch (IOException ignored) {
+        // overwritten or cleared on the next start
+      }
+    }
+  }
+
+  private Path spillFile(String key) {
+    return spillDirectory.resolve(key + ".bin");
+  }
+
+  /** Spilled files of a previous host instance are not indexed, so they are removed. */
+  private void clearSpillDirectory() {
+    if (!Files.isDirectory(spillDirectory)) return;
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      files.forEach(
+          file -> {
+            try {
+              Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+              // left for the next start
+            }
+          });
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not clear the export spill directory.", e);
+    }
+  }
+
+  /**
+   * Waits for a render started by another invocation and rethrows its failure, or returns {@code
+   * null} if that invocation was not admitted to render.
+   */
+  private static byte[] await(CompletableFuture<byte[]> render)
+      throws IOException, ValidationException, BuilderException, JAXBException, SAXException {
+    try {
+      return render.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while waiting for the export.", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException) cause;
+      if (cause instanceof ValidationException) throw (ValidationException) cause;
+      if (cause instanceof BuilderException) throw (BuilderException) cause;
+      if (cause instanceof JAXBException) throw (JAXBException) cause;
+      if (cause instanceof SAXException) throw (SAXException) cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /** Renders an export when it is not cached. */
+  @FunctionalInterface
+  interface Renderer {
+    byte[] render()
+        throws IOException, ValidationException, BuilderException, JAXBException, SAXException;
+  }
+}
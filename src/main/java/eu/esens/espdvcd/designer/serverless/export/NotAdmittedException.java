@@ -0,0 +1,21 @@
+package eu.esens.espdvcd.designer.serverless.export;
+
+import eu.esens.espdvcd.designer.serverless.util.AdmissionController;
+
+/**
+ * Carries a refused reservation out of a render, to be answered with its 429. The refusal is the
+ * rendering caller's own, so {@link ExportResultCache} does not hand it to the callers waiting for
+ * the same render.
+ */
+final class NotAdmittedException extends RuntimeException {
+  private final AdmissionController.Permit permit;
+
+  NotAdmittedException(AdmissionController.Permit permit) {
+    super(null, null, false, false);
+    this.permit = permit;
+  }
+
+  AdmissionController.Permit getPermit() {
+    return permit;
+  }
+}
@@ -0,0 +1,364 @@
+package eu.esens.espdvcd.designer.serverless.imp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.BindingName;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.exception.ValidationException;
+import eu.esens.espdvcd.designer.serverless.util.AdmissionController;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.util.ScratchSpace;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
+import eu.esens.espdvcd.designer.service.ImportESPDService;
+import eu.esens.espdvcd.designer.util.Errors;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/** Azure Functions with HTTP Trigger. */
+public class BulkImportESPDFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
+  private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+  private static final int MAX_FILES = 500;
+  private static final long MAX_EXTRACTED_BYTES = 256L * 1024 * 1024;
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final ExecutorService IMPORTERS = createExecutor();
+
+  /**
+   * This function listens at endpoint "/api/BulkImportESPDFunction". It takes a ZIP archive of
+   * ESPD XML files, or a multipart upload with several XML files, imports them in parallel and
+   * returns one JSON line per file in the order the imports finish: curl --data-binary
+   * @responses.zip -H "Content-Type: application/zip" "{your host}/api/importESPD/response/bulk"
+   */
+  @FunctionName("BulkImportESPDFunction")
+  public HttpResponseMessage run(
+      @HttpTrigger(
+              name = "req",
+              methods = {HttpMethod.POST},
+              route = "importESPD/{artefactType}/bulk",
+              dataType = "binary",
+              authLevel = AuthorizationLevel.ANONYMOUS)
+          HttpRequestMessage<Optional<byte[]>> request,
+      @BindingName("artefactType") String artefactTypeParam,
+      final ExecutionContext context) {
+    Metrics.Invocation invocation = Metrics.getInstance().begin("BulkImportESPDFunction");
+    try {
+      return handle(request, artefactTypeParam, invocation);
+    } finally {
+      invocation.end();
+    }
+  }
+
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<byte[]>> request,
+      String artefactTypeParam,
+      Metrics.Invocation invocation) {
+    AdmissionController.Permit permit = null;
+    List<Upload> uploads = new ArrayList<>();
+    try {
+      RequestPipeline.ArtefactType artefactType = RequestPipeline.artefactType(artefactTypeParam);
+      if (artefactType == null) return CommonError.UNSUPPORTED_ARTEFACT_TYPE.toResponse(request);
+      ImportESPDService service = artefactType.importService();
+
+      permit =
+          AdmissionController.getInstance()
+              .admit(request, ServerlessConfig.getInstance().admissionImportFactor());
+      if (!permit.isGranted()) return permit.toResponse(request);
+
+      if (request.getBody().isEmpty())
+        return CommonError.EMPTY_BODY.toResponse(request);
+
+      ContractingOperatorEnum contractingOperatorEnum =
+          RequestPipeline.contractingOperator(request);
+
+      String contentType = request.getHeaders().get(HttpHeaders.CONTENT_TYPE.toLowerCase());
+      if (contentType == null) return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
+      byte[] body = request.getBody().get();
+      invocation.size("requestBytes", body.length);
+      try {
+        if (contentType.contains(ContentType.MULTIPART_FORM_DATA.getMimeType())) {
+          fromMultipart(body, contentType, uploads);
+        } else if (contentType.contains("zip")
+            || contentType.contains(ContentType.APPLICATION_OCTET_STREAM.getMimeType())) {
+          fromZip(body, uploads);
+        } else {
+          return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
+        }
+      } catch (IOException | IllegalArgumentException e) {
+        return request
+            .createResponseBuilder(HttpStatus.BAD_REQUEST)
+            .body(Errors.standardError(400, "Request could not be parsed. Reason: " + e.getMessage()))
+            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+            .build();
+      }
+
+      invocation.phase("unpack");
+      invocation.size("files", uploads.size());
+
+      if (uploads.isEmpty())
+        return CommonError.NO_FILE.toResponse(request);
+      if (uploads.size() > MAX_FILES)
+        return request
+            .createResponseBuilder(HttpStatus.BAD_REQUEST)
+            .body(
+                Errors.standardError(
+                    400, String.format("At most %d files can be imported at once.", MAX_FILES)))
+            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+            .build();
+
+      CompletionService<String> imports = new ExecutorCompletionService<>(IMPORTERS);
+      ContractingOperatorEnum operator = contractingOperatorEnum;
+      List<Future<String>> pending = new ArrayList<>(uploads.size());
+      AtomicBoolean abandoned = new AtomicBoolean();
+      // The Java worker cannot stream a response, so lines are collected in completion order
+      StringBuilder ndjson = new StringBuilder();
+      try {
+        for (Upload upload : uploads) {
+          pending.add(
+              imports.submit(() -> abandoned.get() ? null : importLine(upload, service, operator)));
+        }
+        for (int i = 0; i < uploads.size(); i++) {
+          ndjson.append(imports.take().get()).append('\n');
+        }
+      } catch (RejectedExecutionException e) {
+        return CommonError.OVERLOADED.toResponse(request);
+      } catch (InterruptedException | ExecutionException e) {
+        if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        return request
+            .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(Errors.standardError(500, e.getMessage()))
+            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+            .build();
+      } finally {
+        // Imports not started yet are skipped, and running ones are waited for, so that their
+        // scratch files are not closed under them and the permit covers them until they end.
+        // Future.cancel would not do: a cancelled future does not wait for its task to end
+        abandoned.set(true);
+        awaitAll(pending);
+      }
+
+      invocation.phase("import");
+      return request
+          .createResponseBuilder(HttpStatus.OK)
+          .body(ndjson.toString())
+          .header(HttpHeaders.CONTENT_TYPE, NDJSON_CONTENT_TYPE)
+          .build();
+    } finally {
+      // Extracted entries not imported yet, because of an early return or a failure
+      for (Upload upload : uploads) {
+        if (upload.file != null) upload.file.close();
+      }
+      if (permit != null) permit.release();
+    }
+  }
+
+  /**
+   * Imports one file and renders its outcome as a single JSON line. A file that fails to import
+   * gets a line with its error; only a failure to write the line itself, or an {@link Error},
+   * escapes and fails the whole upload.
+   */
+  private static String importLine(
+      Upload upload, ImportESPDService service, ContractingOperatorEnum contractingOperatorEnum)
+      throws IOException {
+    int status;
+    String json;
+    if (!upload.isXml) {
+      status = 400;
+      json = CommonError.NOT_XML.getBody();
+    } else {
+      try {
+        // Files are imported on pool threads, so each gets an invocation of its own
+        Metrics.Invocation file = Metrics.getInstance().begin("BulkImportESPDFunction.file");
+        try {
+          json =
+              upload.file != null
+                  ? EspdXmlImporter.importFile(service, upload.file, contractingOperatorEnum, file)
+                  : EspdXmlImporter.importXml(
+                      service, upload.xml, upload.size, contractingOperatorEnum, file);
+        } finally {
+          file.end();
+        }
+        status = 200;
+      } catch (ValidationException e) {
+        status = 400;
+        json = Errors.validationError(e.getMessage(), e.getResults());
+      } catch (Exception e) {
+        status = 400;
+        json = Errors.notAcceptableError(e.getMessage());
+      } finally {
+        if (upload.file != null) upload.file.close();
+      }
+    }
+
+    StringWriter line = new StringWriter();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(line)) {
+      generator.writeStartObject();
+      generator.writeStringField("file", upload.name);
+      generator.writeNumberField("status", status);
+      generator.writeFieldName(status == 200 ? "espd" : "error");
+      writeCompact(generator, json);
+      generator.writeEndObject();
+    }
+    return line.toString();
+  }
+
+  /** Waits for every task to end, however it ends, and restores an interrupt afterwards. */
+  private static void awaitAll(List<? extends Future<?>> tasks) {
+    boolean interrupted = false;
+    for (Future<?> task : tasks) {
+      while (true) {
+        try {
+          task.get();
+          break;
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          break;
+        }
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+  /** Copies a JSON document token by token, so pretty-printed input stays on one line. */
+  private static void writeCompact(JsonGenerator generator, String json) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      parser.nextToken();
+      generator.copyCurrentStructure(parser);
+    } catch (JsonProcessingException e) {
+      generator.writeString(json);
+    }
+  }
+
+  private static void fromMultipart(byte[] body, String contentType, List<Upload> uploads)
+      throws IOException {
+    for (MultipartBody.Part part : MultipartBody.parse(body, contentType)) {
+      String fileName = part.getFileName();
+      if (fileName == null) continue; // plain form fields carry no artefact
+      uploads.add(
+          new Upload(
+              fileName,
+              part.getHeaders().toLowerCase().contains("xml")
+                  || fileName.toLowerCase().endsWith(".xml"),
+              part.getLength(),
+              part::writeTo));
+    }
+  }
+
+  /**
+   * Extracts the XML entries of the archive into scratch files, one at a time, so the archive is
+   * never held expanded in memory. Other entries are only named, since they are rejected unread.
+   */
+  private static void fromZip(byte[] body, List<Upload> uploads) throws IOException {
+    long extracted = 0;
+    try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(body))) {
+      ZipEntry entry;
+      byte[] chunk = new byte[8192];
+      while ((entry = zip.getNextEntry()) != null) {
+        if (entry.isDirectory()) continue;
+        String name = entry.getName();
+        if (uploads.size() == MAX_FILES) {
+          // One more entry is enough to reject the upload for having too many files
+          uploads.add(new Upload(name, false, 0, null));
+          break;
+        }
+        if (!name.toLowerCase().endsWith(".xml")) {
+          uploads.add(new Upload(name, false, 0, null));
+          continue;
+        }
+        // The declared size is only trusted to pick RAM over disk, and enforced below
+        ScratchSpace.ScratchFile file = ScratchSpace.getInstance().create(".xml", entry.getSize());
+        Upload upload = new Upload(name, true, file);
+        uploads.add(upload);
+        long written = 0;
+        try (OutputStream out = file.newOutputStream()) {
+          int read;
+          while ((read = zip.read(chunk)) != -1) {
+            extracted += read;
+            written += read;
+            if (extracted > MAX_EXTRACTED_BYTES)
+              throw new IOException("The archive expands to more than the allowed size.");
+            if (file.isInMemory() && written > entry.getSize())
+              throw new IOException(name + " is larger than its declared size.");
+            out.write(chunk, 0, read);
+          }
+        }
+      }
+    }
+  }
+
+  private static ExecutorService createExecutor() {
+    int parallelism = ServerlessConfig.getInstance().importBulkParallelism();
+    ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            parallelism,
+            parallelism,
+            30,
+            TimeUnit.SECONDS,
+            // Room for one full upload; beyond that whole uploads are turned away
+            new ArrayBlockingQueue<>(MAX_FILES),
+            runnable -> {
+              Thread thread = new Thread(runnable, "espd-bulk-import");
+              thread.setDaemon(true);
+              return thread;
+            });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /** An uploaded file, either written on demand or already extracted to a scratch file. */
+  private static final class Upload {
+    private final String name;
+    private final boolean isXml;
+    private final long size;
+    private final EspdXmlImporter.XmlWriter xml;
+    private final ScratchSpace.ScratchFile file;
+
+    private Upload(String name, boolean isXml, long size, EspdXmlImporter.XmlWriter xml) {
+      this.name = name;
+      this.isXml = isXml;
+      this.size = size;
+      this.xml = xml;
+      this.file = null;
+    }
+
+    private Upload(String name, boolean isXml, ScratchSpace.ScratchFile file) {
+      this.name = name;
+      this.isXml = isXml;
+      this.size = -1;
+      this.xml = null;
+      this.file = file;
+    }
+  }
+}
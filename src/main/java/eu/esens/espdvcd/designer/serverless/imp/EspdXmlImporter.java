@@ -0,0 +1,100 @@
+package eu.esens.espdvcd.designer.serverless.imp;
+
+import eu.esens.espdvcd.builder.exception.BuilderException;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.exception.ValidationException;
+import eu.esens.espdvcd.designer.serverless.util.ArtefactDumper;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.ScratchSpace;
+import eu.esens.espdvcd.designer.service.ImportESPDService;
+import eu.esens.espdvcd.designer.util.JsonUtil;
+import eu.esens.espdvcd.retriever.exception.RetrieverException;
+import org.xml.sax.SAXException;
+
+import javax.xml.bind.JAXBException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+
+/**
+ * Hands uploaded XML to an import service. The service validates and reads a file, so the XML is
+ * written once, straight from the request body, to a {@link ScratchSpace} file that is removed
+ * when the import is done.
+ */
+final class EspdXmlImporter {
+
+  private EspdXmlImporter() {}
+
+  /**
+   * Imports the XML and returns the imported artefact as JSON, recording the write, import and
+   * serialization phases on the invocation. {@code sizeHint} is an upper bound of the XML size.
+   */
+  static String importXml(
+      ImportESPDService service,
+      XmlWriter xml,
+      long sizeHint,
+      ContractingOperatorEnum contractingOperatorEnum,
+      Metrics.Invocation invocation)
+      throws IOException, ValidationException, JAXBException, SAXException, RetrieverException,
+          BuilderException {
+    try (ScratchSpace.ScratchFile scratchFile =
+        ScratchSpace.getInstance().create(".xml", sizeHint)) {
+      ArtefactDumper dumper = ArtefactDumper.getInstance();
+      if (dumper.isEnabled()) {
+        // The dump gets its own copy, so the writer never reads the file back
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        xml.writeTo(copy);
+        byte[] content = copy.toByteArray();
+        try (OutputStream out = scratchFile.newOutputStream()) {
+          out.write(content);
+        }
+        dumper.dump(ArtefactDumper.Kind.XML, content);
+      } else {
+        try (OutputStream out = scratchFile.newOutputStream()) {
+          xml.writeTo(out);
+        }
+      }
+      invocation.phase("writeTempFile");
+      return importScratchFile(service, scratchFile, contractingOperatorEnum, invocation);
+    }
+  }
+
+  /**
+   * Imports XML that is already in a scratch file, such as an entry extracted from an archive, and
+   * returns the imported artefact as JSON. The caller keeps ownership of the file.
+   */
+  static String importFile(
+      ImportESPDService service,
+      ScratchSpace.ScratchFile scratchFile,
+      ContractingOperatorEnum contractingOperatorEnum,
+      Metrics.Invocation invocation)
+      throws IOException, ValidationException, JAXBException, SAXException, RetrieverException,
+          BuilderException {
+    ArtefactDumper dumper = ArtefactDumper.getInstance();
+    if (dumper.isEnabled()) {
+      dumper.dump(ArtefactDumper.Kind.XML, Files.readAllBytes(scratchFile.getPath()));
+    }
+    return importScratchFile(service, scratchFile, contractingOperatorEnum, invocation);
+  }
+
+  private static String importScratchFile(
+      ImportESPDService service,
+      ScratchSpace.ScratchFile scratchFile,
+      ContractingOperatorEnum contractingOperatorEnum,
+      Metrics.Invocation invocation)
+      throws IOException, ValidationException, JAXBException, SAXException, RetrieverException,
+          BuilderException {
+    Object imported = service.importESPDFile(scratchFile.toFile(), contractingOperatorEnum);
+    invocation.phase("import");
+    String json = JsonUtil.toJson(imported);
+    invocation.phase("serialize");
+    return json;
+  }
+
+  /** Writes the XML of one uploaded artefact. */
+  @FunctionalInterface
+  interface XmlWriter {
+    void writeTo(OutputStream out) throws IOException;
+  }
+}
@@ -7,29 +7,30 @@ import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
 import eu.esens.espdvcd.builder.exception.BuilderException;
 import eu.esens.espdvcd.designer.exception.ValidationException;
-import eu.esens.espdvcd.designer.serverless.util.APIUtils;
-import eu.esens.espdvcd.designer.service.ImportESPDRequestService;
-import eu.esens.espdvcd.designer.service.ImportESPDResponseService;
+import eu.esens.espdvcd.designer.serverless.util.AdmissionController;
+import eu.esens.espdvcd.designer.serverless.util.CommonError;
+import eu.esens.espdvcd.designer.serverless.util.Metrics;
+import eu.esens.espdvcd.designer.serverless.util.RequestPipeline;
+import eu.esens.espdvcd.designer.serverless.util.ServerlessConfig;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.service.ImportESPDService;
 import eu.esens.espdvcd.designer.util.Errors;
-import eu.esens.espdvcd.designer.util.JsonUtil;
 import eu.esens.espdvcd.retriever.exception.RetrieverException;
 import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
-import org.apache.commons.fileupload.MultipartStream;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
 import org.xml.sax.SAXException;
 
 import javax.xml.bind.JAXBException;
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.io.IOException;
 import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class ImportESPDFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   static final String LOGGER_DOCUMENT_ERROR =
       "Error occurred in ESPDEndpoint while converting an XML response to an object. ";
 
@@ -44,165 +45,112 @@ public class ImportESPDFunction {
               name = "req",
               methods = {HttpMethod.POST},
               route = "importESPD/{artefactType}",
+              dataType = "binary",
               authLevel = AuthorizationLevel.ANONYMOUS)
-          HttpRequestMessage<Optional<String>> request,
+          HttpRequestMessage<Optional<byte[]>> request,
       @BindingName("artefactType") String artefactTypeParam,
       final ExecutionContext context) {
-
-    ImportESPDService service;
-    switch (artefactTypeParam) {
-      case "request":
-        service = ImportESPDRequestService.getInstance();
-        break;
-      case "response":
-        service = ImportESPDResponseService.getInstance();
-        break;
-      default:
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(
-                Errors.standardError(
-                    400,
-                    String.format(
-                        "Artefact type must be request or response. \"%s\" is not supported.",
-                        artefactTypeParam)))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
+    Metrics.Invocation invocation = Metrics.getInstance().begin("ImportESPDFunction");
+    try {
+      return handle(request, artefactTypeParam, invocation);
+    } finally {
+      invocation.end();
     }
+  }
 
-    if (request.getBody().isEmpty())
-      return request
-          .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(Errors.standardError(400, "Request body must not be empty."))
-          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-          .build();
-
-    // Parse query parameter
-    String contractingOperator = request.getQueryParameters().get("contractingOperator");
-    ContractingOperatorEnum contractingOperatorEnum;
+  private HttpResponseMessage handle(
+      HttpRequestMessage<Optional<byte[]>> request,
+      String artefactTypeParam,
+      Metrics.Invocation invocation) {
+    AdmissionController.Permit permit = null;
     try {
-      contractingOperatorEnum = ContractingOperatorEnum.valueOf(contractingOperator);
-    } catch (IllegalArgumentException | NullPointerException e) {
-      contractingOperatorEnum = ContractingOperatorEnum.CONTRACTING_ENTITY;
-    }
+      RequestPipeline.ArtefactType artefactType = RequestPipeline.artefactType(artefactTypeParam);
+      if (artefactType == null) return CommonError.UNSUPPORTED_ARTEFACT_TYPE.toResponse(request);
+      ImportESPDService service = artefactType.importService();
+
+      permit =
+          AdmissionController.getInstance()
+              .admit(request, ServerlessConfig.getInstance().admissionImportFactor());
+      if (!permit.isGranted()) return permit.toResponse(request);
 
-    if (request
-        .getHeaders()
-        .get(HttpHeaders.CONTENT_TYPE.toLowerCase())
-        .contains(ContentType.MULTIPART_FORM_DATA.getMimeType())) {
-      String contentType = request.getHeaders().get("content-type"); // Get content-type header
-      // here the "content-type" must be lower-case
-      String body = request.getBody().get(); // Get request body
-      InputStream in = new ByteArrayInputStream(body.getBytes()); // Convert body to an input stream
-      String boundary =
-          contentType.split(";")[1].split("=")[1]; // Get boundary from content-type header
-      int bufSize = 2048;
-      MultipartStream multipartStream =
-          new MultipartStream(
-              in,
-              boundary.getBytes(),
-              bufSize,
-              null); // Using MultipartStream to parse body input stream
-      try {
-        boolean nextPart = multipartStream.skipPreamble();
-        if (nextPart) {
-          if (!multipartStream.readHeaders().toLowerCase().contains("xml"))
-            return request
-                .createResponseBuilder(HttpStatus.BAD_REQUEST)
-                .body(Errors.standardError(400, "Please provide an XML file."))
-                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-                .build();
-          File tempFile = File.createTempFile("espd-file", ".tmp");
-          tempFile.deleteOnExit();
-          FileOutputStream fos = new FileOutputStream(tempFile);
-          multipartStream.readBodyData(fos);
-          APIUtils.writeDumpedFile(tempFile);
+      if (request.getBody().isEmpty())
+        return CommonError.EMPTY_BODY.toResponse(request);
 
-          try {
-            return request
-                .createResponseBuilder(HttpStatus.OK)
-                .body(JsonUtil.toJson(service.importESPDFile(tempFile, contractingOperatorEnum)))
-                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-                .build();
-          } catch (RetrieverException
-              | BuilderException
-              | NullPointerException
-              | JAXBException
-              | SAXException
-              | IllegalStateException e) {
-            return request
-                .createResponseBuilder(HttpStatus.BAD_REQUEST)
-                .body(Errors.notAcceptableError(e.getMessage()))
-                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-                .build();
-          } catch (ValidationException e) {
-            return request
-                .createResponseBuilder(HttpStatus.BAD_REQUEST)
-                .body(Errors.validationError(e.getMessage(), e.getResults()))
-                .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-                .build();
-          }
-        } else {
+      ContractingOperatorEnum contractingOperatorEnum =
+          RequestPipeline.contractingOperator(request);
+
+      String contentType = request.getHeaders().get(HttpHeaders.CONTENT_TYPE.toLowerCase());
+      if (contentType == null) return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
+      byte[] body = request.getBody().get();
+      invocation.size("requestBytes", body.length);
+      if (contentType.contains(ContentType.MULTIPART_FORM_DATA.getMimeType())) {
+        MultipartBody.Part part;
+        try {
+          part = MultipartBody.firstPart(body, contentType);
+          invocation.phase("parseMultipart");
+        } catch (IOException e) {
           return request
               .createResponseBuilder(HttpStatus.BAD_REQUEST)
               .body(
-                  Errors.standardError(
-                      400, "There was no file found in your upload, please check your input."))
+                  Errors.standardError(400, "Request could not be parsed. Reason: " + e.getMessage()))
               .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
               .build();
         }
-      } catch (IOException e) {
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(
-                Errors.standardError(400, "Request could not be parsed. Reason: " + e.getMessage()))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
-      }
-    } else if (request
-        .getHeaders()
-        .get(HttpHeaders.CONTENT_TYPE.toLowerCase())
-        .contains(ContentType.APPLICATION_XML.getMimeType())) {
-      try {
-        Path tempFile = Files.createTempFile("espd-file", ".tmp");
-        byte[] xmlStream = request.getBody().get().getBytes(StandardCharsets.UTF_8);
-        Files.write(tempFile, xmlStream, StandardOpenOption.CREATE);
-        File espdFile = tempFile.toFile();
-        APIUtils.writeDumpedFile(espdFile);
+        if (part == null)
+          return CommonError.NO_FILE.toResponse(request);
+        if (!part.getHeaders().toLowerCase().contains("xml"))
+          return CommonError.NOT_XML.toResponse(request);
+        return importXml(
+            request, service, part::writeTo, part.getLength(), contractingOperatorEnum, invocation);
+      } else if (contentType.contains(ContentType.APPLICATION_XML.getMimeType())) {
+        return importXml(
+            request,
+            service,
+            out -> out.write(body),
+            body.length,
+            contractingOperatorEnum,
+            invocation);
+      } else
+        return CommonError.UNSUPPORTED_CONTENT_TYPE.toResponse(request);
+    } finally {
+      if (permit != null) permit.release();
+    }
+  }
 
-        return request
-            .createResponseBuilder(HttpStatus.OK)
-            .body(JsonUtil.toJson(service.importESPDFile(espdFile, contractingOperatorEnum)))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
-      } catch (IllegalStateException
-          | IOException
-          | JAXBException
-          | SAXException
-          | RetrieverException
-          | BuilderException e) {
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(Errors.notAcceptableError(e.getMessage()))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
-      } catch (ValidationException e) {
-        return request
-            .createResponseBuilder(HttpStatus.BAD_REQUEST)
-            .body(Errors.validationError(e.getMessage(), e.getResults()))
-            .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
-            .build();
-      }
-    } else
+  private HttpResponseMessage importXml(
+      HttpRequestMessage<Optional<byte[]>> request,
+      ImportESPDService service,
+      EspdXmlImporter.XmlWriter xml,
+      long size,
+      ContractingOperatorEnum contractingOperatorEnum,
+      Metrics.Invocation invocation) {
+    try {
+      String json =
+          EspdXmlImporter.importXml(service, xml, size, contractingOperatorEnum, invocation);
+      invocation.size("responseBytes", json);
+      return request
+          .createResponseBuilder(HttpStatus.OK)
+          .body(json)
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (IllegalStateException
+        | NullPointerException
+        | IOException
+        | JAXBException
+        | SAXException
+        | RetrieverException
+        | BuilderException e) {
+      return request
+          .createResponseBuilder(HttpStatus.BAD_REQUEST)
+          .body(Errors.notAcceptableError(e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    } catch (ValidationException e) {
       return request
           .createResponseBuilder(HttpStatus.BAD_REQUEST)
-          .body(
-              Errors.standardError(
-                  400,
-                  String.format(
-                      "Can't handle content type %s",
-                      request.getHeaders().get(HttpHeaders.CONTENT_TYPE))))
+          .body(Errors.validationError(e.getMessage(), e.getResults()))
           .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
           .build();
+    }
   }
 }
@@ -0,0 +1,140 @@
+package eu.esens.espdvcd.designer.serverless.imp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Minimal multipart/form-data parser working directly on the request body. Parts are returned as
+ * (offset, length) views of the original array, so no part content is ever copied.
+ */
+final class MultipartBody {
+
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+  private MultipartBody() {}
+
+  /** Parses every part of the body. */
+  static List<Part> parse(byte[] body, String contentType) throws IOException {
+    byte[] delimiter = ("--" + boundary(contentType)).getBytes(StandardCharsets.ISO_8859_1);
+    int position = indexOf(body, delimiter, 0);
+    if (position < 0) return Collections.emptyList();
+
+    List<Part> parts = new ArrayList<>();
+    while (true) {
+      position += delimiter.length;
+      if (startsWith(body, position, new byte[] {'-', '-'})) break; // closing delimiter
+      if (!startsWith(body, position, CRLF))
+        throw new IOException("Malformed multipart body: expected CRLF after the boundary.");
+      position += CRLF.length;
+
+      int headersEnd = indexOf(body, HEADER_END, position);
+      if (headersEnd < 0) throw new IOException("Malformed multipart body: unterminated headers.");
+      String headers =
+          new String(body, position, headersEnd - position, StandardCharsets.ISO_8859_1);
+      int contentStart = headersEnd + HEADER_END.length;
+
+      int next = indexOf(body, delimiter, contentStart);
+      if (next < 0) throw new IOException("Malformed multipart body: missing closing boundary.");
+      // The CRLF preceding the delimiter belongs to the delimiter, not to the content
+      int contentEnd = next;
+      if (contentEnd - CRLF.length >= contentStart
+          && startsWith(body, contentEnd - CRLF.length, CRLF)) {
+        contentEnd -= CRLF.length;
+      }
+      parts.add(new Part(body, headers, contentStart, contentEnd - contentStart));
+      position = next;
+    }
+    return parts;
+  }
+
+  /** Returns the first part of the body, or {@code null} if there is none. */
+  static Part firstPart(byte[] body, String contentType) throws IOException {
+    List<Part> parts = parse(body, contentType);
+    return parts.isEmpty() ? null : parts.get(0);
+  }
+
+  private static String boundary(String contentType) throws IOException {
+    for (String parameter : contentType.split(";")) {
+      String trimmed = parameter.trim();
+      if (trimmed.regionMatches(true, 0, "boundary=", 0, "boundary=".length())) {
+        String boundary = trimmed.substring("boundary=".length());
+        if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\""))
+          boundary = boundary.substring(1, boundary.length() - 1);
+        if (!boundary.isEmpty()) return boundary;
+      }
+    }
+    throw new IOException("Content type does not define a multipart boundary.");
+  }
+
+  private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+    if (offset + prefix.length > data.length) return false;
+    for (int i = 0; i < prefix.length; i++) {
+      if (data[offset + i] != prefix[i]) return false;
+    }
+    return true;
+  }
+
+  private static int indexOf(byte[] data, byte[] pattern, int from) {
+    int last = data.length - pattern.length;
+    for (int i = from; i <= last; i++) {
+      if (data[i] == pattern[0] && startsWith(data, i, pattern)) return i;
+    }
+    return -1;
+  }
+
+  /** A part of a multipart body, backed by the body array. */
+  static final class Part {
+    private final byte[] body;
+    private final String headers;
+    private final int offset;
+    private final int length;
+
+    private Part(byte[] body, String headers, int offset, int length) {
+      this.body = body;
+      this.headers = headers;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    /** The raw part headers, separated by CRLF. */
+    String getHeaders() {
+      return headers;
+    }
+
+    /** The file name of the Content-Disposition header, or {@code null} for plain form fields. */
+    String getFileName() {
+      for (String header : headers.split("\r\n")) {
+        if (!header.regionMatches(true, 0, "content-disposition:", 0, 20)) continue;
+        for (String parameter : header.substring(20).split(";")) {
+          String trimmed = parameter.trim();
+          if (trimmed.regionMatches(true, 0, "filename=", 0, 9)) {
+            String fileName = trimmed.substring(9);
+            if (fileName.length() > 1 && fileName.startsWith("\"") && fileName.endsWith("\""))
+              fileName = fileName.substring(1, fileName.length() - 1);
+            return fileName;
+          }
+        }
+      }
+      return null;
+    }
+
+    int getLength() {
+      return length;
+    }
+
+    InputStream openStream() {
+      return new ByteArrayInputStream(body, offset, length);
+    }
+
+    void writeTo(OutputStream out) throws IOException {
+      out.write(body, offset, length);
+    }
+  }
+}
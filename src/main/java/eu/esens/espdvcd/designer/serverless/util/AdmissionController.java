@@ -0,0 +1,200 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the heavy functions, imports and exports. A request is admitted only if
+ * an operation slot is free and its estimated heap need, derived from its Content-Length, fits the
+ * memory budget: the configured share of the maximum heap, less the live set after the last GC
+ * and the estimates of the requests already running. Otherwise it is shed with 429 and
+ * Retry-After, so bursts slow down instead of running the instance out of memory and taking
+ * unrelated requests down with it. Bodies over the size limit are rejected with 413.
+ *
+ * <p>A request is always admitted when nothing else is running, so a single large document is
+ * never starved.
+ */
+public final class AdmissionController {
+
+  private static final AdmissionController INSTANCE = new AdmissionController();
+  /** The smallest estimate, covering the fixed cost of an operation. */
+  private static final long MIN_ESTIMATE = 4L * 1024 * 1024;
+
+  private final Semaphore slots;
+  private final long maxRequestBytes;
+  private final long heapBudget;
+  private final String retryAfter;
+  private final List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+  private final AtomicLong reservedBytes = new AtomicLong();
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLong shed = new AtomicLong();
+  private final AtomicLong tooLarge = new AtomicLong();
+
+  private AdmissionController() {
+    ServerlessConfig config = ServerlessConfig.getInstance();
+    slots = new Semaphore(Math.max(1, config.admissionMaxConcurrent()));
+    maxRequestBytes = config.admissionMaxRequestBytes();
+    heapBudget = (long) (Runtime.getRuntime().maxMemory() * config.admissionHeapFraction());
+    retryAfter = Long.toString(config.admissionRetryAfter());
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP && pool.isCollectionUsageThresholdSupported())
+        heapPools.add(pool);
+    }
+  }
+
+  public static AdmissionController getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Tries to admit an operation. {@code bytesPerBodyByte} scales the request size to the heap the
+   * operation is expected to need; use the factors of {@link ServerlessConfig}. The returned
+   * permit must be released when the operation ends, whether or not it was granted.
+   */
+  public Permit admit(HttpRequestMessage<?> request, long bytesPerBodyByte) {
+    if (isTooLarge(request)) return new Permit(CommonError.PAYLOAD_TOO_LARGE, 0);
+    return reserve(request, bytesPerBodyByte);
+  }
+
+  /**
+   * Whether the body is over the size limit and the request should be rejected with 413. Check
+   * it before the body is used at all; {@link #admit} includes this check.
+   */
+  public boolean isTooLarge(HttpRequestMessage<?> request) {
+    if (contentLength(request) <= maxRequestBytes) return false;
+    tooLarge.incrementAndGet();
+    return true;
+  }
+
+  /**
+   * Tries to reserve an operation slot and the heap of a request whose size was already checked
+   * with {@link #isTooLarge}, for operations that only need the heap some of the time. The
+   * returned permit must be released like the one of {@link #admit}.
+   */
+  public Permit reserve(HttpRequestMessage<?> request, long bytesPerBodyByte) {
+    long length = contentLength(request);
+    if (!slots.tryAcquire()) {
+      shed.incrementAndGet();
+      return new Permit(CommonError.OVERLOADED, 0);
+    }
+    long estimate = Math.max(MIN_ESTIMATE, saturatedMultiply(length, bytesPerBodyByte));
+    long budget = heapBudget - liveHeapAfterLastGc();
+    while (true) {
+      long reserved = reservedBytes.get();
+      if (reserved > 0 && reserved + estimate > budget) {
+        slots.release();
+        shed.incrementAndGet();
+        return new Permit(CommonError.OVERLOADED, 0);
+      }
+      if (reservedBytes.compareAndSet(reserved, reserved + estimate)) break;
+    }
+    admitted.incrementAndGet();
+    return new Permit(null, estimate);
+  }
+
+  /** Number of operations admitted since startup. */
+  public long getAdmitted() {
+    return admitted.get();
+  }
+
+  /** Number of operations shed with 429 since startup. */
+  public long getShed() {
+    return shed.get();
+  }
+
+  /** Number of requests rejected with 413 since startup. */
+  public long getTooLarge() {
+    return tooLarge.get();
+  }
+
+  /** Estimated heap bytes of the operations running now. */
+  public long getReservedBytes() {
+    return reservedBytes.get();
+  }
+
+  /**
+   * The Content-Length header, or the size of the body the worker delivered when the header is
+   * missing or malformed.
+   */
+  private static long contentLength(HttpRequestMessage<?> request) {
+    String header = request.getHeaders().get(HttpHeaders.CONTENT_LENGTH.toLowerCase());
+    if (header != null && !header.isEmpty() && header.length() < 19) {
+      long length = 0;
+      for (int i = 0; i < header.length(); i++) {
+        char digit = header.charAt(i);
+        if (digit < '0' || digit > '9') {
+          length = -1;
+          break;
+        }
+        length = length * 10 + (digit - '0');
+      }
+      if (length >= 0) return length;
+    }
+    Object body = request.getBody();
+    if (body instanceof Optional) body = ((Optional<?>) body).orElse(null);
+    if (body instanceof byte[]) return ((byte[]) body).length;
+    if (body instanceof String) return ((String) body).length();
+    return 0;
+  }
+
+  /** Heap in use right after the last collection of each pool, which approximates live data. */
+  private long liveHeapAfterLastGc() {
+    long live = 0;
+    for (MemoryPoolMXBean pool : heapPools) {
+      MemoryUsage usage = pool.getCollectionUsage();
+      if (usage != null) live += usage.getUsed();
+    }
+    return live;
+  }
+
+  private static long saturatedMultiply(long a, long b) {
+    long high = Math.multiplyHigh(a, b);
+    return high == 0 && a * b >= 0 ? a * b : Long.MAX_VALUE;
+  }
+
+  /** The outcome of an admission; release it when the operation ends. */
+  public final class Permit {
+    private final CommonError rejection;
+    private long estimate;
+
+    private Permit(CommonError rejection, long estimate) {
+      this.rejection = rejection;
+      this.estimate = estimate;
+    }
+
+    public boolean isGranted() {
+      return rejection == null;
+    }
+
+    /** The 413 or 429 response of a permit that was not granted. */
+    public HttpResponseMessage toResponse(HttpRequestMessage<?> request) {
+      HttpResponseMessage.Builder builder =
+          request
+              .createResponseBuilder(rejection.getStatus())
+              .body(rejection.getBody())
+              .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType());
+      if (rejection == CommonError.OVERLOADED) builder.header(HttpHeaders.RETRY_AFTER, retryAfter);
+      return builder.build();
+    }
+
+    /** Returns the slot and the reserved heap; releasing twice has no effect. */
+    public void release() {
+      if (!isGranted() || estimate < 0) return;
+      reservedBytes.addAndGet(-estimate);
+      estimate = -1;
+      slots.release();
+    }
+  }
+}
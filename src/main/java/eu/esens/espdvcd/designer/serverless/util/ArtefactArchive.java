@@ -0,0 +1,230 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An append-only, content-addressed archive of dumped artefacts. Each artefact is compressed into
+ * a gzip member of its own and appended to the current segment file, so a segment is a valid gzip
+ * stream and every artefact can be read back alone. Artefacts whose SHA-256 digest was seen
+ * recently are stored only once. Every receipt still gets an index line that points at the stored
+ * copy, which keeps the audit trail.
+ *
+ * <p>Segments roll over by size or age. They are named after their creation time in UTC and the
+ * process id, so several workers can share the directory. Each {@code .gz} segment has an {@code
+ * .idx} index of tab-separated lines: digest, kind, receipt time, segment, offset, compressed
+ * length and length.
+ */
+final class ArtefactArchive {
+
+  // Always UTC, so that the name order of segments is their age order across DST and zone changes
+  private static final DateTimeFormatter SEGMENT_NAME_FORMAT =
+      DateTimeFormatter.ofPattern("uuuuMMdd-HHmmss").withZone(ZoneOffset.UTC);
+  private static final String SEGMENT_EXTENSION = ".gz";
+  private static final String INDEX_EXTENSION = ".idx";
+
+  private final Path directory;
+  private final long maxSegmentBytes;
+  private final long maxSegmentMillis;
+  private final Map<String, Location> recent;
+  private final String processId = Long.toString(ProcessHandle.current().pid());
+  private int segmentSequence;
+  private String segmentName;
+  private OutputStream segment;
+  private Writer index;
+  private long segmentOffset;
+  private long segmentOpenedAt;
+
+  ArtefactArchive(Path directory, long maxSegmentBytes, long maxSegmentMillis, int dedupEntries) {
+    this.directory = directory;
+    this.maxSegmentBytes = maxSegmentBytes;
+    this.maxSegmentMillis = maxSegmentMillis;
+    this.recent =
+        new LinkedHashMap<>(Math.min(dedupEntries, 1024), 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Location> eldest) {
+            return size() > dedupEntries;
+          }
+        };
+  }
+
+  /**
+   * Archives an artefact and returns {@code true} if its content was stored, or {@code false} if
+   * it only got an index line pointing at an identical artefact archived before.
+   */
+  synchronized boolean append(String kind, byte[] content, ZonedDateTime receivedAt)
+      throws IOException {
+    String digest = Digests.sha256Hex(content);
+    Location stored = recent.get(digest);
+    boolean isNew = stored == null;
+    try {
+      rollIfNeeded(receivedAt);
+      if (isNew) {
+        byte[] compressed = compress(content);
+        segment.write(compressed);
+        stored = new Location(segmentName, segmentOffset, compressed.length, content.length);
+        segmentOffset += compressed.length;
+        recent.put(digest, stored);
+      }
+      index.write(
+          String.join(
+              "\t",
+              digest,
+              kind,
+              receivedAt.toOffsetDateTime().toString(),
+              stored.segment,
+              Long.toString(stored.offset),
+              Long.toString(stored.compressedLength),
+              Long.toString(stored.length)));
+      index.write('\n');
+      return isNew;
+    } catch (IOException e) {
+      // A partial write would shift every later offset, so the segment is abandoned
+      if (isNew) recent.remove(digest);
+      closeQuietly();
+      throw e;
+    }
+  }
+
+  /** Makes everything appended so far visible to readers of the segment and index files. */
+  synchronized void flush() throws IOException {
+    if (segment != null) segment.flush();
+    if (index != null) index.flush();
+  }
+
+  /**
+   * Reads an archived artefact by its hex SHA-256 digest, or returns {@code null} if it is not in
+   * the archive. Recent digests are looked up in memory, others in the index files, newest first.
+   */
+  synchronized byte[] read(String digest) throws IOException {
+    flush();
+    Location location = recent.get(digest);
+    if (location == null) location = search(digest);
+    if (location == null) return null;
+
+    ByteBuffer compressed = ByteBuffer.allocate((int) location.compressedLength);
+    try (FileChannel channel =
+        FileChannel.open(directory.resolve(location.segment + SEGMENT_EXTENSION))) {
+      while (compressed.hasRemaining()) {
+        if (channel.read(compressed, location.offset + compressed.position()) < 0)
+          throw new IOException("Archive segment " + location.segment + " is truncated.");
+      }
+    }
+    try (GZIPInputStream in =
+        new GZIPInputStream(new ByteArrayInputStream(compressed.array()))) {
+      return in.readAllBytes();
+    }
+  }
+
+  private Location search(String digest) throws IOException {
+    if (!Files.isDirectory(directory)) return null;
+    List<Path> indexes = new ArrayList<>();
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + INDEX_EXTENSION)) {
+      files.forEach(indexes::add);
+    }
+    // Names start with the creation time, so the reverse name order is newest first
+    indexes.sort(Collections.reverseOrder());
+    for (Path indexFile : indexes) {
+      try (BufferedReader reader = Files.newBufferedReader(indexFile, StandardCharsets.UTF_8)) {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (!line.startsWith(digest)) continue;
+          String[] fields = line.split("\t");
+          if (fields.length == 7 && fields[0].equals(digest))
+            return new Location(
+                fields[3],
+                Long.parseLong(fields[4]),
+                Long.parseLong(fields[5]),
+                Long.parseLong(fields[6]));
+        }
+      }
+    }
+    return null;
+  }
+
+  private void rollIfNeeded(ZonedDateTime now) throws IOException {
+    long nowMillis = now.toInstant().toEpochMilli();
+    if (segment != null
+        && segmentOffset < maxSegmentBytes
+        && nowMillis - segmentOpenedAt < maxSegmentMillis) return;
+    close();
+    Files.createDirectories(directory);
+    segmentName =
+        String.format(
+            "%s-%s-%d", now.format(SEGMENT_NAME_FORMAT), processId, ++segmentSequence);
+    segment =
+        new BufferedOutputStream(
+            Files.newOutputStream(
+                directory.resolve(segmentName + SEGMENT_EXTENSION), StandardOpenOption.CREATE_NEW));
+    index =
+        Files.newBufferedWriter(
+            directory.resolve(segmentName + INDEX_EXTENSION),
+            StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE_NEW);
+    segmentOffset = 0;
+    segmentOpenedAt = nowMillis;
+  }
+
+  /** Closes the current segment; the next append starts a new one. */
+  synchronized void close() throws IOException {
+    try {
+      if (segment != null) segment.close();
+      if (index != null) index.close();
+    } finally {
+      segment = null;
+      index = null;
+    }
+  }
+
+  private void closeQuietly() {
+    try {
+      close();
+    } catch (IOException ignored) {
+      // the next append opens a new segment either way
+    }
+  }
+
+  private static byte[] compress(byte[] content) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 4 + 64);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(content);
+    }
+    return out.toByteArray();
+  }
+
+  private static final class Location {
+    private final String segment;
+    private final long offset;
+    private final long compressedLength;
+    private final long length;
+
+    private Location(String segment, long offset, long compressedLength, long length) {
+      this.segment = segment;
+      this.offset = offset;
+      this.compressedLength = compressedLength;
+      this.length = length;
+    }
+  }
+}
@@ -0,0 +1,200 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import eu.esens.espdvcd.designer.util.AppConfig;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Dumps incoming artefacts for auditing when {@link AppConfig#isArtefactDumpingEnabled()} is on.
+ * Requests only enqueue the bytes; a background writer drains the queue in batches into an
+ * {@link ArtefactArchive} in the "archive" directory of the dump location. When the queue is full,
+ * artefacts are dropped and counted instead of holding up the request. A configurable share of
+ * artefacts is sampled out before it is queued.
+ */
+public final class ArtefactDumper {
+
+  private static final Logger LOGGER = Logger.getLogger(ArtefactDumper.class.getName());
+  private static final ArtefactDumper INSTANCE = new ArtefactDumper();
+
+  private final boolean enabled;
+  private final BlockingQueue<Dump> queue;
+  private final long maxQueuedBytes;
+  private final int batchSize;
+  private final double sampleRate;
+  private final AtomicLong queuedBytes = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong deduplicated = new AtomicLong();
+  private final AtomicLong sampledOut = new AtomicLong();
+  private final AtomicLong dropped = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+  private volatile ArtefactArchive archive;
+  private volatile Thread writer;
+
+  private ArtefactDumper() {
+    ServerlessConfig config = ServerlessConfig.getInstance();
+    enabled = AppConfig.getInstance().isArtefactDumpingEnabled();
+    queue = new ArrayBlockingQueue<>(Math.max(1, config.dumpQueueSize()));
+    maxQueuedBytes = config.dumpQueueBytes();
+    batchSize = Math.max(1, config.dumpBatchSize());
+    sampleRate = config.dumpSampleRate();
+  }
+
+  public static ArtefactDumper getInstance() {
+    return INSTANCE;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queues an artefact for dumping. Returns {@code false} when dumping is disabled or the artefact
+   * was dropped because the queue is full; an artefact left out by sampling counts as handled. The
+   * array must not be modified afterwards.
+   */
+  public boolean dump(Kind kind, byte[] content) {
+    if (!enabled) return false;
+    if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+      sampledOut.incrementAndGet();
+      return true;
+    }
+    if (queuedBytes.addAndGet(content.length) > maxQueuedBytes
+        || !queue.offer(new Dump(kind, content, ZonedDateTime.now(ZoneOffset.UTC)))) {
+      queuedBytes.addAndGet(-content.length);
+      dropped.incrementAndGet();
+      return false;
+    }
+    startWriter();
+    return true;
+  }
+
+  /** Number of artefacts whose content was archived since startup. */
+  public long getWritten() {
+    return written.get();
+  }
+
+  /** Number of artefacts only indexed since startup, because an identical one was archived. */
+  public long getDeduplicated() {
+    return deduplicated.get();
+  }
+
+  /** Number of artefacts left out by sampling since startup. */
+  public long getSampledOut() {
+    return sampledOut.get();
+  }
+
+  /**
+   * Reads an archived artefact back by the hex SHA-256 digest of its content, or returns {@code
+   * null} if it is not archived.
+   */
+  public byte[] find(String digest) throws IOException {
+    return enabled ? archive().read(digest) : null;
+  }
+
+  /** Number of artefacts dropped because the queue was full. */
+  public long getDropped() {
+    return dropped.get();
+  }
+
+  /** Number of artefacts that could not be written. */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  private void startWriter() {
+    if (writer != null) return;
+    synchronized (this) {
+      if (writer != null) return;
+      Thread thread = new Thread(this::drain, "espd-dump");
+      thread.setDaemon(true);
+      thread.start();
+      writer = thread;
+    }
+  }
+
+  private void drain() {
+    List<Dump> batch = new ArrayList<>(batchSize);
+    while (true) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+      queue.drainTo(batch, batchSize - 1);
+      for (Dump dump : batch) {
+        write(dump);
+        queuedBytes.addAndGet(-dump.content.length);
+      }
+      batch.clear();
+      try {
+        archive().flush();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Could not flush the artefact archive.", e);
+      }
+    }
+  }
+
+  private void write(Dump dump) {
+    try {
+      if (archive().append(dump.kind.token, dump.content, dump.receivedAt))
+        written.incrementAndGet();
+      else deduplicated.incrementAndGet();
+    } catch (IOException | RuntimeException e) {
+      failed.incrementAndGet();
+      LOGGER.log(Level.WARNING, "Dumping of artefacts is enabled, but it failed.", e);
+    }
+  }
+
+  private ArtefactArchive archive() {
+    if (archive != null) return archive;
+    synchronized (this) {
+      if (archive == null) {
+        ServerlessConfig config = ServerlessConfig.getInstance();
+        archive =
+            new ArtefactArchive(
+                Paths.get(AppConfig.getInstance().dumpIncomingArtefactsLocation(), "archive"),
+                config.dumpSegmentBytes(),
+                TimeUnit.SECONDS.toMillis(config.dumpSegmentSeconds()),
+                Math.max(1, config.dumpDedupEntries()));
+      }
+      return archive;
+    }
+  }
+
+  /** The kinds of artefacts that are dumped, recorded in the archive index. */
+  public enum Kind {
+    XML("xml"),
+    JSON("json");
+
+    private final String token;
+
+    Kind(String token) {
+      this.token = token;
+    }
+  }
+
+  private static final class Dump {
+    private final Kind kind;
+    private final byte[] content;
+    private final ZonedDateTime receivedAt;
+
+    private Dump(Kind kind, byte[] content, ZonedDateTime receivedAt) {
+      this.kind = kind;
+      this.content = content;
+      this.receivedAt = receivedAt;
+    }
+  }
+}
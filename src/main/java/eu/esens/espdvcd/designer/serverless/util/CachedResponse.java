@@ -0,0 +1,182 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import eu.esens.espdvcd.designer.util.JsonUtil;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * An immutable, already serialized response body together with its strong ETag and
+ * Cache-Control value. Gzip and brotli variants are compressed when the instance is built, so
+ * instances are meant to be built once and shared between invocations.
+ *
+ * <p>The bodies are either held on the heap or, for instances made by {@link #mapped}, read from
+ * slices of a memory-mapped file when a response is built.
+ */
+public final class CachedResponse {
+
+  private final byte[] body;
+  private final String contentType;
+  private final String etag;
+  private final String cacheControl;
+  private final byte[] gzipBody;
+  private final byte[] brotliBody;
+  private final ByteBuffer[] mappedBodies;
+
+  private CachedResponse(
+      byte[] body, String contentType, String cacheControl, boolean fastCompression) {
+    this.body = body;
+    this.contentType = contentType;
+    this.etag = computeEtag(body);
+    this.cacheControl = cacheControl;
+    this.gzipBody = ResponseEncoding.GZIP.encode(body, fastCompression);
+    this.brotliBody = ResponseEncoding.BROTLI.encode(body, fastCompression);
+    this.mappedBodies = null;
+  }
+
+  private CachedResponse(
+      ByteBuffer[] mappedBodies, String etag, String contentType, String cacheControl) {
+    this.body = null;
+    this.contentType = contentType;
+    this.etag = etag;
+    this.cacheControl = cacheControl;
+    this.gzipBody = null;
+    this.brotliBody = null;
+    this.mappedBodies = mappedBodies;
+  }
+
+  /**
+   * Serializes a service result the same way the functions return it: strings are sent as they
+   * are, anything else is converted to JSON.
+   */
+  public static CachedResponse json(Object result, String cacheControl)
+      throws JsonProcessingException {
+    return json(result, cacheControl, false);
+  }
+
+  /**
+   * Serializes a service result as {@link #json(Object, String)} does. Fast compression is for
+   * bulk builds of many responses, where the total CPU time matters more than a few bytes each.
+   */
+  public static CachedResponse json(Object result, String cacheControl, boolean fastCompression)
+      throws JsonProcessingException {
+    String json = result instanceof String ? (String) result : JsonUtil.toJson(result);
+    return new CachedResponse(
+        json.getBytes(StandardCharsets.UTF_8),
+        ContentType.APPLICATION_JSON.getMimeType(),
+        cacheControl,
+        fastCompression);
+  }
+
+  /**
+   * A response whose bodies are slices of a memory-mapped file, indexed by {@link
+   * ResponseEncoding} ordinal; encodings without a variant are {@code null}. The slices must not
+   * be written to, and the etag must be the one the heap instance of the same body has.
+   */
+  public static CachedResponse mapped(
+      ByteBuffer[] bodies, String etag, String contentType, String cacheControl) {
+    if (bodies.length != ResponseEncoding.values().length
+        || bodies[ResponseEncoding.IDENTITY.ordinal()] == null)
+      throw new IllegalArgumentException("A mapped response needs an identity body.");
+    return new CachedResponse(bodies.clone(), etag, contentType, cacheControl);
+  }
+
+  public byte[] getBody() {
+    return bodyFor(ResponseEncoding.IDENTITY);
+  }
+
+  /** Returns the body in the given encoding, or {@code null} if there is no such variant. */
+  public byte[] getBody(ResponseEncoding encoding) {
+    return bodyFor(encoding);
+  }
+
+  public String getEtag() {
+    return etag;
+  }
+
+  /**
+   * Builds the response for the given request in the best content encoding it accepts, answering
+   * with 304 Not Modified when the client already holds the current representation.
+   */
+  public HttpResponseMessage toResponse(HttpRequestMessage<?> request) {
+    ResponseEncoding encoding =
+        ResponseEncoding.negotiate(
+            request.getHeaders().get(HttpHeaders.ACCEPT_ENCODING.toLowerCase()),
+            hasVariant(ResponseEncoding.BROTLI),
+            hasVariant(ResponseEncoding.GZIP));
+    String encodedEtag = etagFor(encoding);
+    boolean hasVariants = hasVariant(ResponseEncoding.GZIP) || hasVariant(ResponseEncoding.BROTLI);
+
+    HttpResponseMessage.Builder builder;
+    if (matches(request.getHeaders().get(HttpHeaders.IF_NONE_MATCH.toLowerCase()))) {
+      builder = request.createResponseBuilder(HttpStatus.NOT_MODIFIED);
+    } else {
+      builder =
+          request
+              .createResponseBuilder(HttpStatus.OK)
+              .body(bodyFor(encoding))
+              .header(HttpHeaders.CONTENT_TYPE, contentType);
+      if (encoding != ResponseEncoding.IDENTITY)
+        builder.header(HttpHeaders.CONTENT_ENCODING, encoding.getToken());
+    }
+    builder.header(HttpHeaders.ETAG, encodedEtag).header(HttpHeaders.CACHE_CONTROL, cacheControl);
+    if (hasVariants) builder.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+    return builder.build();
+  }
+
+  private boolean hasVariant(ResponseEncoding encoding) {
+    if (mappedBodies != null) return mappedBodies[encoding.ordinal()] != null;
+    return encoding == ResponseEncoding.IDENTITY || bodyFor(encoding) != null;
+  }
+
+  private byte[] bodyFor(ResponseEncoding encoding) {
+    if (mappedBodies != null) {
+      ByteBuffer mapped = mappedBodies[encoding.ordinal()];
+      if (mapped == null) return null;
+      // The copy is the only allocation; the worker takes the body as an array
+      byte[] copy = new byte[mapped.remaining()];
+      mapped.duplicate().get(copy);
+      return copy;
+    }
+    switch (encoding) {
+      case BROTLI:
+        return brotliBody;
+      case GZIP:
+        return gzipBody;
+      default:
+        return body;
+    }
+  }
+
+  /** Each encoded variant is a distinct representation and gets an ETag of its own. */
+  private String etagFor(ResponseEncoding encoding) {
+    if (encoding == ResponseEncoding.IDENTITY) return etag;
+    return etag.substring(0, etag.length() - 1) + '-' + encoding.getToken() + '"';
+  }
+
+  private boolean matches(String ifNoneMatch) {
+    if (ifNoneMatch == null || ifNoneMatch.isBlank()) return false;
+    for (String candidate : ifNoneMatch.split(",")) {
+      String tag = candidate.trim();
+      if (tag.equals("*")) return true;
+      // If-None-Match uses the weak comparison, so a W/ prefix added by a proxy still matches
+      if (tag.startsWith("W/")) tag = tag.substring(2);
+      // The content is the same whatever the encoding, so any variant's tag validates it
+      for (ResponseEncoding encoding : ResponseEncoding.values()) {
+        if (tag.equals(etagFor(encoding))) return true;
+      }
+    }
+    return false;
+  }
+
+  private static String computeEtag(byte[] body) {
+    return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Digests.sha256(body)) + '"';
+  }
+}
@@ -0,0 +1,105 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.designer.util.Errors;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * Client errors with a fixed body, rendered once when the class is loaded. Malformed and scanner
+ * requests mostly end in one of these, so they no longer cost a JSON serialization each. The
+ * bodies do not echo request values.
+ */
+public enum CommonError {
+  UNSUPPORTED_CRITERIA_ROUTE(
+      HttpStatus.BAD_REQUEST,
+      Errors.notAcceptableError(
+          "Version and qualification application type must be v1/regulated, v2/regulated or "
+              + "v2/selfcontained.")),
+  UNSUPPORTED_CODELISTS_VERSION(
+      HttpStatus.BAD_REQUEST, Errors.notAcceptableError("Version must be v1 or v2.")),
+  UNSUPPORTED_VERSION(
+      HttpStatus.BAD_REQUEST, Errors.standardError(400, "Version must be v1 or v2.")),
+  UNSUPPORTED_ARTEFACT_TYPE(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(400, "Document type (request or response) must be specified.")),
+  UNSUPPORTED_EXPORT_TYPE(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(
+          400,
+          Arrays.stream(ExportType.values())
+              .map(exportType -> exportType.name().toLowerCase())
+              .collect(Collectors.joining(", ", "Export type must be one of ", ".")))),
+  INVALID_LANGUAGE(
+      HttpStatus.BAD_REQUEST, Errors.standardError(400, "Language code is missing or is invalid.")),
+  INVALID_LANGUAGES(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(400, "Language codes are missing or are invalid.")),
+  INVALID_EXPORT_TYPES(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(400, "Export types are missing or are invalid.")),
+  EMPTY_BODY(HttpStatus.BAD_REQUEST, Errors.standardError(400, "Request body must not be empty.")),
+  UNSUPPORTED_CONTENT_TYPE(HttpStatus.BAD_REQUEST, Errors.unacceptableContentType()),
+  NO_FILE(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(
+          400, "There was no file found in your upload, please check your input.")),
+  NOT_XML(HttpStatus.BAD_REQUEST, Errors.standardError(400, "Please provide an XML file.")),
+  INVALID_CRITERIA_LIST(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(400, "Request body must be a JSON array of criterion IDs.")),
+  INVALID_SEARCH_QUERY(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(400, "Search query must contain at least one letter or digit.")),
+  INVALID_PAGINATION(
+      HttpStatus.BAD_REQUEST,
+      Errors.standardError(
+          400, "Page must be a positive number and size a number between 1 and 100.")),
+  CRITERIA_NOT_FOUND(HttpStatus.NOT_FOUND, Errors.criteriaNotFoundError()),
+  CODELIST_NOT_FOUND(HttpStatus.NOT_FOUND, Errors.codelistNotFoundError()),
+  UNKNOWN_COUNTRY(
+      HttpStatus.NOT_ACCEPTABLE, Errors.notAcceptableError("Country code does not exist.")),
+  UNKNOWN_LANGUAGE_OR_COUNTRY(
+      HttpStatus.NOT_ACCEPTABLE,
+      Errors.notAcceptableError("Language or country code does not exist.")),
+  PAYLOAD_TOO_LARGE(
+      HttpStatus.PAYLOAD_TOO_LARGE,
+      Errors.standardError(413, "Request body is larger than this service accepts.")),
+  OVERLOADED(
+      HttpStatus.TOO_MANY_REQUESTS,
+      Errors.standardError(429, "The service is busy, please retry later.")),
+  V1_TRANSLATION_UNSUPPORTED(
+      HttpStatus.BAD_REQUEST,
+      Errors.notAcceptableError("Translation for V1 codelists is not supported."));
+
+  private final HttpStatus status;
+  private final String body;
+
+  CommonError(HttpStatus status, String body) {
+    this.status = status;
+    this.body = body;
+  }
+
+  public HttpStatus getStatus() {
+    return status;
+  }
+
+  /** The pre-rendered JSON body. */
+  public String getBody() {
+    return body;
+  }
+
+  public HttpResponseMessage toResponse(HttpRequestMessage<?> request) {
+    return request
+        .createResponseBuilder(status)
+        .body(body)
+        .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+        .build();
+  }
+}
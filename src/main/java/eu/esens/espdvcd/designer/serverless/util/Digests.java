@@ -0,0 +1,32 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** SHA-256 digests, as the caches, ETags and the artefact archive address content by. */
+public final class Digests {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private Digests() {}
+
+  /** Returns the SHA-256 digest of the content. */
+  public static byte[] sha256(byte[] content) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(content);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available on this platform.", e);
+    }
+  }
+
+  /** Returns the SHA-256 digest of the content in lower-case hex. */
+  public static String sha256Hex(byte[] content) {
+    byte[] digest = sha256(content);
+    char[] hex = new char[digest.length * 2];
+    for (int i = 0; i < digest.length; i++) {
+      hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+      hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+    }
+    return new String(hex);
+  }
+}
@@ -0,0 +1,39 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive, exception-free parsing of enum constants. {@code Enum.valueOf} throws for
+ * unknown names, and filling in the stack trace of that exception made malformed requests more
+ * expensive than valid ones. The name tables are built once per enum type.
+ */
+public final class EnumLookup {
+
+  private static final ClassValue<Map<String, Enum<?>>> CONSTANTS =
+      new ClassValue<>() {
+        @Override
+        protected Map<String, Enum<?>> computeValue(Class<?> type) {
+          Map<String, Enum<?>> constants = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+          for (Object constant : type.getEnumConstants()) {
+            constants.put(((Enum<?>) constant).name(), (Enum<?>) constant);
+          }
+          return Collections.unmodifiableMap(constants);
+        }
+      };
+
+  private EnumLookup() {}
+
+  /** Returns the constant with the given name, ignoring case, or {@code null} if there is none. */
+  public static <E extends Enum<E>> E parse(Class<E> type, String name) {
+    if (name == null) return null;
+    return type.cast(CONSTANTS.get(type).get(name));
+  }
+
+  /** Returns the constant with the given name, ignoring case, or the fallback if there is none. */
+  public static <E extends Enum<E>> E parse(Class<E> type, String name, E fallback) {
+    E constant = parse(type, name);
+    return constant == null ? fallback : constant;
+  }
+}
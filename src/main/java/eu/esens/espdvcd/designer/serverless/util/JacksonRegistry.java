@@ -0,0 +1,69 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import eu.esens.espdvcd.designer.deserialiser.RequirementDeserialiser;
+import eu.esens.espdvcd.model.ESPDRequestImpl;
+import eu.esens.espdvcd.model.ESPDResponseImpl;
+import eu.esens.espdvcd.model.requirement.Requirement;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One fully configured {@link ObjectMapper} per {@link EDMVersion}, built when the class is
+ * loaded and shared by all invocations so that Jackson's serializer and deserializer caches
+ * survive between requests. Mappers and readers are thread-safe; callers must not reconfigure
+ * the shared mappers.
+ */
+public final class JacksonRegistry {
+
+  private static final Map<EDMVersion, JacksonRegistry> REGISTRY = new EnumMap<>(EDMVersion.class);
+
+  static {
+    boolean afterburner = ServerlessConfig.getInstance().isJacksonAfterburnerEnabled();
+    for (EDMVersion version : EDMVersion.values()) {
+      REGISTRY.put(version, new JacksonRegistry(version, afterburner));
+    }
+  }
+
+  private final ObjectMapper mapper;
+  private final ObjectReader requestReader;
+  private final ObjectReader responseReader;
+
+  private JacksonRegistry(EDMVersion version, boolean afterburner) {
+    mapper =
+        new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(
+                new SimpleModule()
+                    .addDeserializer(Requirement.class, new RequirementDeserialiser(version)))
+            .disable(DeserializationFeature.ADJUST_DATES_TO_CONTEXT_TIME_ZONE)
+            .enable(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT)
+            .enable(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT);
+    if (afterburner) {
+      mapper.registerModule(new AfterburnerModule());
+    }
+    requestReader = mapper.readerFor(ESPDRequestImpl.class);
+    responseReader = mapper.readerFor(ESPDResponseImpl.class);
+  }
+
+  public static ObjectMapper getMapper(EDMVersion version) {
+    return REGISTRY.get(version).mapper;
+  }
+
+  /** Reader for ESPD requests of the given version. */
+  public static ObjectReader getRequestReader(EDMVersion version) {
+    return REGISTRY.get(version).requestReader;
+  }
+
+  /** Reader for ESPD responses of the given version. */
+  public static ObjectReader getResponseReader(EDMVersion version) {
+    return REGISTRY.get(version).responseReader;
+  }
+}
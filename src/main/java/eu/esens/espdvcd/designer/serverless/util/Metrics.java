@@ -0,0 +1,216 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import eu.esens.espdvcd.designer.serverless.codelists.TranslatedCodelistBlob;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency and payload size distributions per function, kept in HdrHistogram recorders. Recording
+ * is wait-free, so it can stay on the request path; histograms are only merged when the metrics
+ * are read. Latencies are recorded in microseconds and reported in milliseconds.
+ */
+public final class Metrics {
+
+  private static final Metrics INSTANCE = new Metrics();
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String TOTAL = "total";
+
+  private final ConcurrentMap<String, ConcurrentMap<String, Series>> latencies =
+      new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, Series>> sizes =
+      new ConcurrentHashMap<>();
+
+  private Metrics() {}
+
+  public static Metrics getInstance() {
+    return INSTANCE;
+  }
+
+  /** Starts timing an invocation of the given function. */
+  public Invocation begin(String function) {
+    return new Invocation(function);
+  }
+
+  /** Records the duration of a phase of a function. */
+  public void recordLatency(String function, String phase, long nanos) {
+    series(latencies, function, phase).record(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  /** Records a payload size, such as the request or response body, of a function. */
+  public void recordSize(String function, String payload, long bytes) {
+    series(sizes, function, payload).record(bytes);
+  }
+
+  /** Renders every distribution recorded since startup as JSON. */
+  public String toJson() throws IOException {
+    Set<String> functions = new TreeSet<>(latencies.keySet());
+    functions.addAll(sizes.keySet());
+
+    StringWriter json = new StringWriter();
+    try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+      generator.writeStartObject();
+      generator.writeNumberField(
+          "uptimeSeconds",
+          TimeUnit.MILLISECONDS.toSeconds(ManagementFactory.getRuntimeMXBean().getUptime()));
+      generator.writeObjectFieldStart("functions");
+      for (String function : functions) {
+        generator.writeObjectFieldStart(function);
+        writeGroup(generator, "latencyMillis", latencies.get(function), 1000.0);
+        writeGroup(generator, "payloadBytes", sizes.get(function), 1.0);
+        generator.writeEndObject();
+      }
+      generator.writeEndObject();
+      ArtefactDumper dumper = ArtefactDumper.getInstance();
+      generator.writeObjectFieldStart("artefactDumps");
+      generator.writeBooleanField("enabled", dumper.isEnabled());
+      generator.writeNumberField("written", dumper.getWritten());
+      generator.writeNumberField("deduplicated", dumper.getDeduplicated());
+      generator.writeNumberField("sampledOut", dumper.getSampledOut());
+      generator.writeNumberField("dropped", dumper.getDropped());
+      generator.writeNumberField("failed", dumper.getFailed());
+      generator.writeEndObject();
+      AdmissionController admission = AdmissionController.getInstance();
+      generator.writeObjectFieldStart("admission");
+      generator.writeNumberField("admitted", admission.getAdmitted());
+      generator.writeNumberField("shed", admission.getShed());
+      generator.writeNumberField("tooLarge", admission.getTooLarge());
+      generator.writeNumberField("reservedBytes", admission.getReservedBytes());
+      generator.writeEndObject();
+      ScratchSpace scratch = ScratchSpace.getInstance();
+      generator.writeObjectFieldStart("scratch");
+      generator.writeNumberField("openFiles", scratch.getOpenFiles());
+      generator.writeNumberField("memoryFiles", scratch.getMemoryFiles());
+      generator.writeNumberField("memoryBytes", scratch.getMemoryBytes());
+      generator.writeNumberField("diskFiles", scratch.getDiskFiles());
+      generator.writeNumberField("pendingDeletes", scratch.getPendingDeletes());
+      generator.writeNumberField("created", scratch.getCreated());
+      generator.writeEndObject();
+      TranslatedCodelistBlob codelistBlob = TranslatedCodelistBlob.getInstance();
+      generator.writeObjectFieldStart("codelistBlob");
+      generator.writeNumberField("entries", codelistBlob.getEntries());
+      generator.writeNumberField("bytes", codelistBlob.getSize());
+      generator.writeEndObject();
+      generator.writeEndObject();
+    }
+    return json.toString();
+  }
+
+  private static void writeGroup(
+      JsonGenerator generator, String name, Map<String, Series> group, double scale)
+      throws IOException {
+    if (group == null) return;
+    generator.writeObjectFieldStart(name);
+    for (Map.Entry<String, Series> entry : new TreeMap<>(group).entrySet()) {
+      Histogram histogram = entry.getValue().snapshot();
+      generator.writeObjectFieldStart(entry.getKey());
+      generator.writeNumberField("count", histogram.getTotalCount());
+      if (histogram.getTotalCount() > 0) {
+        generator.writeNumberField("mean", histogram.getMean() / scale);
+        for (double percentile : PERCENTILES) {
+          generator.writeNumberField(
+              "p" + (percentile == Math.rint(percentile) ? (int) percentile : percentile),
+              histogram.getValueAtPercentile(percentile) / scale);
+        }
+        generator.writeNumberField("max", histogram.getMaxValue() / scale);
+      }
+      generator.writeEndObject();
+    }
+    generator.writeEndObject();
+  }
+
+  private static Series series(
+      ConcurrentMap<String, ConcurrentMap<String, Series>> group, String function, String name) {
+    return group
+        .computeIfAbsent(function, key -> new ConcurrentHashMap<>())
+        .computeIfAbsent(name, key -> new Series());
+  }
+
+  /**
+   * Times one invocation. Each call to {@link #phase(String)} records the time since the previous
+   * mark, {@link #end()} records the whole invocation. An instance belongs to a single thread.
+   */
+  public final class Invocation {
+    private final String function;
+    private final long startedAt;
+    private long lastMark;
+
+    private Invocation(String function) {
+      this.function = function;
+      this.startedAt = System.nanoTime();
+      this.lastMark = startedAt;
+    }
+
+    /** Records the phase that ends now. */
+    public void phase(String phase) {
+      long now = System.nanoTime();
+      recordLatency(function, phase, now - lastMark);
+      lastMark = now;
+    }
+
+    /** Records a payload size of this invocation's function. */
+    public void size(String payload, long bytes) {
+      recordSize(function, payload, bytes);
+    }
+
+    /** Records the UTF-8 size of a text payload, counted without encoding it. */
+    public void size(String payload, CharSequence text) {
+      recordSize(function, payload, utf8Length(text));
+    }
+
+    /** Records the total duration of the invocation. */
+    public void end() {
+      recordLatency(function, TOTAL, System.nanoTime() - startedAt);
+    }
+  }
+
+  static long utf8Length(CharSequence text) {
+    long bytes = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        bytes++;
+      } else if (c < 0x800) {
+        bytes += 2;
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < text.length()
+          && Character.isLowSurrogate(text.charAt(i + 1))) {
+        bytes += 4;
+        i++;
+      } else {
+        // Lone surrogates are encoded as '?', like String.getBytes does
+        bytes += Character.isSurrogate(c) ? 1 : 3;
+      }
+    }
+    return bytes;
+  }
+
+  private static final class Series {
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram accumulated = new Histogram(3);
+    private Histogram interval;
+
+    void record(long value) {
+      recorder.recordValue(Math.max(0, value));
+    }
+
+    synchronized Histogram snapshot() {
+      interval = recorder.getIntervalHistogram(interval);
+      accumulated.add(interval);
+      return accumulated.copy();
+    }
+  }
+}
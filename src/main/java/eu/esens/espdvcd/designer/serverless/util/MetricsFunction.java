@@ -0,0 +1,47 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.util.Errors;
+import org.apache.http.HttpHeaders;
+import org.apache.http.entity.ContentType;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/** Azure Functions with HTTP Trigger. */
+public class MetricsFunction {
+
+  /**
+   * This function listens at endpoint "/api/MetricsFunction". It returns the latency and payload
+   * size percentiles recorded by this instance since it started, per function and per phase: curl
+   * "{your host}/api/metrics?code={function key}"
+   */
+  @FunctionName("MetricsFunction")
+  public HttpResponseMessage run(
+      @HttpTrigger(
+              name = "req",
+              route = "metrics",
+              methods = {HttpMethod.GET},
+              authLevel = AuthorizationLevel.FUNCTION)
+          HttpRequestMessage<Optional<String>> request,
+      final ExecutionContext context) {
+
+    try {
+      return request
+          .createResponseBuilder(HttpStatus.OK)
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .header(HttpHeaders.CACHE_CONTROL, "no-store")
+          .body(Metrics.getInstance().toJson())
+          .build();
+    } catch (IOException e) {
+      return request
+          .createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
+          .body(Errors.standardError(500, e.getMessage()))
+          .header(HttpHeaders.CONTENT_TYPE, ContentType.APPLICATION_JSON.getMimeType())
+          .build();
+    }
+  }
+}
@@ -4,6 +4,7 @@ import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.FunctionName;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
+import eu.esens.espdvcd.designer.serverless.warmup.WarmupRoutine;
 import eu.esens.espdvcd.designer.util.AppInfo;
 import org.apache.http.HttpHeaders;
 import org.apache.http.entity.ContentType;
@@ -12,6 +13,10 @@ import java.util.Optional;
 
 /** Azure Functions with HTTP Trigger. */
 public class PlatformInfoFunction {
+  static {
+    WarmupRoutine.startOnce();
+  }
+
   /**
    * This function listens at endpoint "/api/PlatformInfoFunction". Two ways to invoke it using
    * "curl" command in bash: 1. curl -d "HTTP Body" {your host}/api/PlatformInfoFunction 2. curl
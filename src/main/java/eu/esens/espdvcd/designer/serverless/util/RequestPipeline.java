@@ -0,0 +1,126 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.microsoft.azure.functions.HttpRequestMessage;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.service.CodelistsService;
+import eu.esens.espdvcd.designer.service.CodelistsV1Service;
+import eu.esens.espdvcd.designer.service.CodelistsV2Service;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.designer.service.ExportESPDService;
+import eu.esens.espdvcd.designer.service.ExportESPDV1Service;
+import eu.esens.espdvcd.designer.service.ExportESPDV2Service;
+import eu.esens.espdvcd.designer.service.ImportESPDRequestService;
+import eu.esens.espdvcd.designer.service.ImportESPDResponseService;
+import eu.esens.espdvcd.designer.service.ImportESPDService;
+import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
+import eu.esens.espdvcd.designer.service.SelfContainedCriteriaService;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * The request handling steps the functions share: resolving route parameters to services through
+ * immutable routing tables and parsing parameters without exceptions. Lookups return {@code null}
+ * for unsupported values, which the functions answer with a {@link CommonError}. Services are
+ * resolved through suppliers, so a route only initializes its service when it is first called.
+ */
+public final class RequestPipeline {
+
+  /** Version, then qualification application type, to criteria service. */
+  private static final Map<String, Map<String, Supplier<CriteriaService>>> CRITERIA_ROUTES =
+      criteriaRoutes();
+
+  private static final Map<EDMVersion, Supplier<CodelistsService>> CODELISTS_ROUTES =
+      versionRoutes(CodelistsV1Service::getInstance, CodelistsV2Service::getInstance);
+
+  private static final Map<EDMVersion, Supplier<ExportESPDService>> EXPORT_ROUTES =
+      versionRoutes(ExportESPDV1Service::getInstance, ExportESPDV2Service::getInstance);
+
+  private RequestPipeline() {}
+
+  /** The criteria service of a version and qualification application type, or {@code null}. */
+  public static CriteriaService criteriaService(
+      String version, String qualificationApplicationType) {
+    if (version == null || qualificationApplicationType == null) return null;
+    Map<String, Supplier<CriteriaService>> types = CRITERIA_ROUTES.get(version);
+    Supplier<CriteriaService> service =
+        types == null ? null : types.get(qualificationApplicationType);
+    return service == null ? null : service.get();
+  }
+
+  /** The EDM version of a route parameter such as "v2", or {@code null}. */
+  public static EDMVersion version(String version) {
+    return EnumLookup.parse(EDMVersion.class, version);
+  }
+
+  /** The codelists service of a version, or {@code null}. */
+  public static CodelistsService codelistsService(String version) {
+    EDMVersion edmVersion = version(version);
+    return edmVersion == null ? null : CODELISTS_ROUTES.get(edmVersion).get();
+  }
+
+  public static ExportESPDService exportService(EDMVersion version) {
+    return EXPORT_ROUTES.get(version).get();
+  }
+
+  /** The artefact type of a route parameter, "request" or "response", or {@code null}. */
+  public static ArtefactType artefactType(String artefactType) {
+    return EnumLookup.parse(ArtefactType.class, artefactType);
+  }
+
+  /**
+   * The "contractingOperator" query parameter, defaulting to a contracting entity when it is
+   * missing or unknown.
+   */
+  public static ContractingOperatorEnum contractingOperator(HttpRequestMessage<?> request) {
+    return EnumLookup.parse(
+        ContractingOperatorEnum.class,
+        request.getQueryParameters().get("contractingOperator"),
+        ContractingOperatorEnum.CONTRACTING_ENTITY);
+  }
+
+  private static Map<String, Map<String, Supplier<CriteriaService>>> criteriaRoutes() {
+    Map<String, Supplier<CriteriaService>> v1 = new TreeMap<>();
+    v1.put("regulated", RegulatedCriteriaService::getV1Instance);
+    Map<String, Supplier<CriteriaService>> v2 = new TreeMap<>();
+    v2.put("regulated", RegulatedCriteriaService::getV2Instance);
+    v2.put("selfcontained", SelfContainedCriteriaService::getInstance);
+
+    Map<String, Map<String, Supplier<CriteriaService>>> routes =
+        new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    routes.put(EDMVersion.V1.name(), Collections.unmodifiableMap(v1));
+    routes.put(EDMVersion.V2.name(), Collections.unmodifiableMap(v2));
+    return Collections.unmodifiableMap(routes);
+  }
+
+  private static <S> Map<EDMVersion, Supplier<S>> versionRoutes(Supplier<S> v1, Supplier<S> v2) {
+    Map<EDMVersion, Supplier<S>> routes = new EnumMap<>(EDMVersion.class);
+    routes.put(EDMVersion.V1, v1);
+    routes.put(EDMVersion.V2, v2);
+    return Collections.unmodifiableMap(routes);
+  }
+
+  /** The two kinds of ESPD artefacts. */
+  public enum ArtefactType {
+    REQUEST(ImportESPDRequestService::getInstance),
+    RESPONSE(ImportESPDResponseService::getInstance);
+
+    private final Supplier<ImportESPDService> importService;
+
+    ArtefactType(Supplier<ImportESPDService> importService) {
+      this.importService = importService;
+    }
+
+    public boolean isResponse() {
+      return this == RESPONSE;
+    }
+
+    public ImportESPDService importService() {
+      return importService.get();
+    }
+  }
+}
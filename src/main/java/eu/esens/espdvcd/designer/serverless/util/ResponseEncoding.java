@@ -0,0 +1,142 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content encodings the GET functions can serve precompressed bodies in, and the negotiation of
+ * the Accept-Encoding request header. Compression runs once, when a cached response is built.
+ */
+public enum ResponseEncoding {
+  BROTLI("br"),
+  GZIP("gzip"),
+  IDENTITY(null);
+
+  private static final Logger LOGGER = Logger.getLogger(ResponseEncoding.class.getName());
+  /** Bodies smaller than this gain nothing from compression. */
+  private static final int MIN_COMPRESSIBLE_SIZE = 1024;
+  /**
+   * Responses are compressed on the request that first builds them, so brotli and gzip (at its
+   * default level 6) trade a few percent of size for milliseconds instead of seconds on
+   * multi-megabyte criteria lists.
+   */
+  private static final int BROTLI_QUALITY = 5;
+  /** For bulk builds of many small bodies, where the total CPU time matters most. */
+  private static final int FAST_BROTLI_QUALITY = 1;
+  private static final boolean BROTLI_AVAILABLE = loadBrotli();
+
+  private final String token;
+
+  ResponseEncoding(String token) {
+    this.token = token;
+  }
+
+  /** The Content-Encoding token, or {@code null} for the identity encoding. */
+  public String getToken() {
+    return token;
+  }
+
+  /**
+   * Compresses the body, returning {@code null} when this encoding is unavailable or does not
+   * make the body smaller.
+   */
+  byte[] encode(byte[] body) {
+    return encode(body, false);
+  }
+
+  /** Compresses the body as {@link #encode(byte[])} does, at the fastest level if asked to. */
+  byte[] encode(byte[] body, boolean fast) {
+    if (body.length < MIN_COMPRESSIBLE_SIZE) return null;
+    try {
+      byte[] encoded;
+      switch (this) {
+        case BROTLI:
+          if (!BROTLI_AVAILABLE) return null;
+          encoded =
+              Encoder.compress(
+                  body,
+                  new Encoder.Parameters()
+                      .setQuality(fast ? FAST_BROTLI_QUALITY : BROTLI_QUALITY)
+                      .setMode(Encoder.Mode.TEXT));
+          break;
+        case GZIP:
+          ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+          try (GZIPOutputStream gzip =
+              new GZIPOutputStream(out) {
+                {
+                  if (fast) def.setLevel(Deflater.BEST_SPEED);
+                }
+              }) {
+            gzip.write(body);
+          }
+          encoded = out.toByteArray();
+          break;
+        default:
+          return null;
+      }
+      return encoded.length < body.length ? encoded : null;
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Could not precompress a response as " + token + ".", e);
+      return null;
+    }
+  }
+
+  /**
+   * Picks the preferred encoding accepted by the client, among those a response has available:
+   * brotli, then gzip, then the identity encoding. Quality values of zero exclude an encoding, and
+   * "*" only stands for the codings the header does not name.
+   */
+  static ResponseEncoding negotiate(String acceptEncoding, boolean brotli, boolean gzip) {
+    if (acceptEncoding == null || acceptEncoding.isBlank()) return IDENTITY;
+    // null while a coding is not named, otherwise whether it was accepted
+    Boolean acceptsBrotli = null;
+    Boolean acceptsGzip = null;
+    boolean acceptsAny = false;
+    for (String coding : acceptEncoding.split(",")) {
+      String[] parameters = coding.split(";");
+      String name = parameters[0].trim().toLowerCase();
+      boolean accepted = !isExcluded(parameters);
+      if (name.equals("br")) acceptsBrotli = accepted && !Boolean.FALSE.equals(acceptsBrotli);
+      else if (name.equals("gzip") || name.equals("x-gzip"))
+        acceptsGzip = accepted && !Boolean.FALSE.equals(acceptsGzip);
+      else if (name.equals("*")) acceptsAny = accepted;
+    }
+    if (brotli && (acceptsBrotli == null ? acceptsAny : acceptsBrotli)) return BROTLI;
+    if (gzip && (acceptsGzip == null ? acceptsAny : acceptsGzip)) return GZIP;
+    return IDENTITY;
+  }
+
+  private static boolean isExcluded(String[] parameters) {
+    for (int i = 1; i < parameters.length; i++) {
+      String parameter = parameters[i].trim();
+      if (parameter.startsWith("q=")) {
+        try {
+          return Double.parseDouble(parameter.substring(2)) <= 0;
+        } catch (NumberFormatException e) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean loadBrotli() {
+    try {
+      if (Brotli4jLoader.isAvailable()) return true;
+      LOGGER.log(
+          Level.INFO,
+          "Brotli is not available on this platform, serving gzip only.",
+          Brotli4jLoader.getUnavailabilityCause());
+    } catch (LinkageError e) {
+      LOGGER.log(Level.INFO, "Brotli is not available on this platform, serving gzip only.", e);
+    }
+    return false;
+  }
+}
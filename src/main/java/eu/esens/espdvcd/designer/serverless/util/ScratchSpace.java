@@ -0,0 +1,239 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Request-scoped scratch files, for services that only read from a {@link File}. Files are
+ * created in a directory of this process and deleted when their {@link ScratchFile} is closed.
+ * Unlike {@link File#deleteOnExit()}, nothing is registered for the life of the JVM. Files that
+ * cannot be deleted right away are retried on later requests. The directory is named after the
+ * process id and start time, since a restarted container often gets the same pid back; directories
+ * of processes that are no longer running are removed on startup.
+ *
+ * <p>Small files go to a RAM-backed directory (tmpfs) when the host has one and its byte budget
+ * allows, so reading them back does not touch the disk. The default, {@code /dev/shm}, exists on
+ * Linux only; on Windows hosts every scratch file is staged on disk, which is logged on startup.
+ */
+public final class ScratchSpace {
+
+  private static final Logger LOGGER = Logger.getLogger(ScratchSpace.class.getName());
+  private static final ScratchSpace INSTANCE = new ScratchSpace();
+
+  private final Path diskDirectory;
+  private final Path memoryDirectory;
+  private final long maxMemoryFileBytes;
+  private final long maxMemoryBytes;
+  private final AtomicLong sequence = new AtomicLong();
+  private final AtomicLong memoryBytes = new AtomicLong();
+  private final AtomicInteger memoryFiles = new AtomicInteger();
+  private final AtomicInteger diskFiles = new AtomicInteger();
+  private final AtomicLong created = new AtomicLong();
+  private final Queue<Path> pendingDeletes = new ConcurrentLinkedQueue<>();
+
+  private ScratchSpace() {
+    ServerlessConfig config = ServerlessConfig.getInstance();
+    String processDirectory = directoryName(ProcessHandle.current());
+    Path disk = Paths.get(config.scratchDirectory());
+    Path memory = Paths.get(config.scratchMemoryDirectory());
+    diskDirectory = disk.resolve(processDirectory);
+    memoryDirectory =
+        Files.isDirectory(memory) && Files.isWritable(memory)
+            ? memory.resolve("espd-scratch").resolve(processDirectory)
+            : null;
+    maxMemoryFileBytes = config.scratchMemoryFileBytes();
+    maxMemoryBytes = config.scratchMemoryBytes();
+    removeAbandonedDirectories(disk);
+    if (memoryDirectory != null) {
+      removeAbandonedDirectories(memoryDirectory.getParent());
+    } else {
+      // The default /dev/shm only exists on Linux; Windows hosts have no tmpfs to offer
+      LOGGER.info(
+          String.format(
+              "RAM staging of scratch files is off, %s is not a writable directory. All scratch"
+                  + " files are staged in %s.",
+              memory, diskDirectory));
+    }
+  }
+
+  public static ScratchSpace getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Creates an empty scratch file. {@code sizeHint} is an upper bound of what will be written; it
+   * decides whether the file fits in the RAM-backed directory.
+   */
+  public ScratchFile create(String suffix, long sizeHint) throws IOException {
+    retryPendingDeletes();
+    long reserved = reserveMemory(sizeHint);
+    Path directory = reserved >= 0 ? memoryDirectory : diskDirectory;
+    try {
+      Files.createDirectories(directory);
+      Path path;
+      while (true) {
+        path = directory.resolve(sequence.incrementAndGet() + suffix);
+        try {
+          Files.newOutputStream(path, StandardOpenOption.CREATE_NEW).close();
+          break;
+        } catch (FileAlreadyExistsException e) {
+          // left by an earlier process the directory name could not tell apart; skip it
+        }
+      }
+      created.incrementAndGet();
+      (reserved >= 0 ? memoryFiles : diskFiles).incrementAndGet();
+      return new ScratchFile(path, reserved);
+    } catch (IOException | RuntimeException e) {
+      if (reserved >= 0) memoryBytes.addAndGet(-reserved);
+      throw e;
+    }
+  }
+
+  /** Number of scratch files that exist now, in RAM and on disk. */
+  public int getOpenFiles() {
+    return memoryFiles.get() + diskFiles.get();
+  }
+
+  /** Number of scratch files in the RAM-backed directory now. */
+  public int getMemoryFiles() {
+    return memoryFiles.get();
+  }
+
+  /** Bytes reserved by the scratch files in the RAM-backed directory now. */
+  public long getMemoryBytes() {
+    return memoryBytes.get();
+  }
+
+  /** Number of scratch files on disk now. */
+  public int getDiskFiles() {
+    return diskFiles.get();
+  }
+
+  /** Number of files whose deletion failed and is retried. */
+  public int getPendingDeletes() {
+    return pendingDeletes.size();
+  }
+
+  /** Number of scratch files created since startup. */
+  public long getCreated() {
+    return created.get();
+  }
+
+  /** Reserves RAM-backed space, returning the reserved bytes or -1 if the file goes to disk. */
+  private long reserveMemory(long sizeHint) {
+    if (memoryDirectory == null || sizeHint < 0 || sizeHint > maxMemoryFileBytes) return -1;
+    while (true) {
+      long used = memoryBytes.get();
+      if (used + sizeHint > maxMemoryBytes) return -1;
+      if (memoryBytes.compareAndSet(used, used + sizeHint)) return sizeHint;
+    }
+  }
+
+  private void retryPendingDeletes() {
+    for (int i = pendingDeletes.size(); i > 0; i--) {
+      Path path = pendingDeletes.poll();
+      if (path == null) return;
+      if (!delete(path)) pendingDeletes.add(path);
+    }
+  }
+
+  private static boolean delete(Path path) {
+    try {
+      Files.deleteIfExists(path);
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /** "{pid}-{start time in epoch millis}", or the pid alone when the start time is unknown. */
+  private static String directoryName(ProcessHandle process) {
+    return process
+        .info()
+        .startInstant()
+        .map(start -> process.pid() + "-" + start.toEpochMilli())
+        .orElse(Long.toString(process.pid()));
+  }
+
+  /**
+   * Removes the directories of processes that are gone, including earlier processes that had the
+   * same pid as a running one; the files in them are orphans.
+   */
+  private static void removeAbandonedDirectories(Path parent) {
+    if (!Files.isDirectory(parent)) return;
+    try (DirectoryStream<Path> processes = Files.newDirectoryStream(parent)) {
+      for (Path process : processes) {
+        String name = process.getFileName().toString();
+        int dash = name.indexOf('-');
+        String pid = dash < 0 ? name : name.substring(0, dash);
+        if (pid.isEmpty() || pid.length() > 18 || !pid.chars().allMatch(Character::isDigit))
+          continue;
+        if (ProcessHandle.of(Long.parseLong(pid))
+            .map(running -> directoryName(running).equals(name))
+            .orElse(false)) continue;
+        try (Stream<Path> files = Files.walk(process)) {
+          files.sorted(Comparator.reverseOrder()).forEach(ScratchSpace::delete);
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      LOGGER.log(Level.WARNING, "Could not remove abandoned scratch files in " + parent + ".", e);
+    }
+  }
+
+  /** A scratch file; closing it deletes the file. */
+  public final class ScratchFile implements AutoCloseable {
+    private final Path path;
+    private final long reservedMemory;
+    private boolean closed;
+
+    private ScratchFile(Path path, long reservedMemory) {
+      this.path = path;
+      this.reservedMemory = reservedMemory;
+    }
+
+    public Path getPath() {
+      return path;
+    }
+
+    public File toFile() {
+      return path.toFile();
+    }
+
+    public boolean isInMemory() {
+      return reservedMemory >= 0;
+    }
+
+    public OutputStream newOutputStream() throws IOException {
+      return Files.newOutputStream(path);
+    }
+
+    /** Deletes the file; a failed deletion is retried later. Closing twice has no effect. */
+    @Override
+    public synchronized void close() {
+      if (closed) return;
+      closed = true;
+      if (!delete(path)) pendingDeletes.add(path);
+      if (isInMemory()) {
+        memoryBytes.addAndGet(-reservedMemory);
+        memoryFiles.decrementAndGet();
+      } else {
+        diskFiles.decrementAndGet();
+      }
+    }
+  }
+}
@@ -0,0 +1,378 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Settings of the serverless deployment. Values are read once from the function app settings
+ * (exposed to the worker as environment variables); unset, malformed or out-of-range values fall
+ * back to the defaults below.
+ */
+public final class ServerlessConfig {
+
+  private static final Logger LOGGER = Logger.getLogger(ServerlessConfig.class.getName());
+  private static final ServerlessConfig INSTANCE = new ServerlessConfig(System.getenv());
+
+  private final long codelistsMaxAge;
+  private final boolean jacksonAfterburnerEnabled;
+  private final long evidenceCacheTtl;
+  private final long evidenceCacheStaleTtl;
+  private final int evidenceCacheSize;
+  private final long evidenceTimeout;
+  private final int evidenceMaxConcurrency;
+  private final int evidenceBatchParallelism;
+  private final int exportBatchParallelism;
+  private final int importBulkParallelism;
+  private final int dumpQueueSize;
+  private final long dumpQueueBytes;
+  private final int dumpBatchSize;
+  private final long exportCacheBytes;
+  private final long exportCacheDiskBytes;
+  private final String exportCacheDirectory;
+  private final String evidenceSource;
+  private final String evidenceStandInDirectory;
+  private final long evidenceStandInLatencyMedian;
+  private final long evidenceStandInLatencyP99;
+  private final double evidenceStandInErrorRate;
+  private final double evidenceStandInSlowRate;
+  private final long evidenceStandInSlowSeconds;
+  private final int admissionMaxConcurrent;
+  private final long admissionMaxRequestBytes;
+  private final long admissionExportFactor;
+  private final long admissionImportFactor;
+  private final double admissionHeapFraction;
+  private final long admissionRetryAfter;
+  private final String scratchDirectory;
+  private final String scratchMemoryDirectory;
+  private final long scratchMemoryFileBytes;
+  private final long scratchMemoryBytes;
+  private final long dumpSegmentBytes;
+  private final long dumpSegmentSeconds;
+  private final int dumpDedupEntries;
+  private final double dumpSampleRate;
+  private final boolean codelistBlobEnabled;
+  private final long evidenceBatchTimeout;
+
+  private ServerlessConfig(Map<String, String> settings) {
+    int processors = Runtime.getRuntime().availableProcessors();
+    codelistsMaxAge = getLong(settings, "ESPD_CODELISTS_MAX_AGE", 3600L, 0L);
+    jacksonAfterburnerEnabled = getBoolean(settings, "ESPD_JACKSON_AFTERBURNER", false);
+    evidenceCacheTtl = getLong(settings, "ESPD_ECERTIS_CACHE_TTL", 3600L, 0L);
+    evidenceCacheStaleTtl = getLong(settings, "ESPD_ECERTIS_CACHE_STALE_TTL", 86400L, 0L);
+    evidenceCacheSize = getInt(settings, "ESPD_ECERTIS_CACHE_SIZE", 10000, 0);
+    evidenceTimeout = getLong(settings, "ESPD_ECERTIS_TIMEOUT", 10L, 1L);
+    evidenceMaxConcurrency = getInt(settings, "ESPD_ECERTIS_MAX_CONCURRENCY", 16, 1);
+    evidenceBatchParallelism = getInt(settings, "ESPD_ECERTIS_BATCH_PARALLELISM", 8, 1);
+    exportBatchParallelism = getInt(settings, "ESPD_EXPORT_BATCH_PARALLELISM", processors, 1);
+    importBulkParallelism = getInt(settings, "ESPD_IMPORT_BULK_PARALLELISM", processors, 1);
+    dumpQueueSize = getInt(settings, "ESPD_DUMP_QUEUE_SIZE", 1024, 1);
+    dumpQueueBytes = getLong(settings, "ESPD_DUMP_QUEUE_BYTES", 64L * 1024 * 1024, 0L);
+    dumpBatchSize = getInt(settings, "ESPD_DUMP_BATCH_SIZE", 64, 1);
+    exportCacheBytes = getLong(settings, "ESPD_EXPORT_CACHE_BYTES", 64L * 1024 * 1024, 0L);
+    exportCacheDiskBytes = getLong(settings, "ESPD_EXPORT_CACHE_DISK_BYTES", 0L, 0L);
+    exportCacheDirectory =
+        getString(
+            settings,
+            "ESPD_EXPORT_CACHE_DIR",
+            Paths.get(System.getProperty("java.io.tmpdir"), "espd-export-cache").toString());
+    evidenceSource = getString(settings, "ESPD_ECERTIS_SOURCE", "live");
+    evidenceStandInDirectory = getString(settings, "ESPD_ECERTIS_STANDIN_DIR", null);
+    evidenceStandInLatencyMedian =
+        getLong(settings, "ESPD_ECERTIS_STANDIN_LATENCY_MEDIAN", 150L, 0L);
+    evidenceStandInLatencyP99 = getLong(settings, "ESPD_ECERTIS_STANDIN_LATENCY_P99", 1500L, 0L);
+    evidenceStandInErrorRate = getDouble(settings, "ESPD_ECERTIS_STANDIN_ERROR_RATE", 0.0, 0, 1);
+    evidenceStandInSlowRate = getDouble(settings, "ESPD_ECERTIS_STANDIN_SLOW_RATE", 0.0, 0, 1);
+    evidenceStandInSlowSeconds = getLong(settings, "ESPD_ECERTIS_STANDIN_SLOW_SECONDS", 120L, 0L);
+    admissionMaxConcurrent = getInt(settings, "ESPD_ADMISSION_MAX_CONCURRENT", 2 * processors, 1);
+    admissionMaxRequestBytes =
+        getLong(settings, "ESPD_ADMISSION_MAX_REQUEST_BYTES", 32L * 1024 * 1024, 0L);
+    admissionExportFactor = getLong(settings, "ESPD_ADMISSION_EXPORT_FACTOR", 40L, 0L);
+    admissionImportFactor = getLong(settings, "ESPD_ADMISSION_IMPORT_FACTOR", 20L, 0L);
+    admissionHeapFraction = getDouble(settings, "ESPD_ADMISSION_HEAP_FRACTION", 0.8, 0, 1);
+    admissionRetryAfter = getLong(settings, "ESPD_ADMISSION_RETRY_AFTER", 2L, 0L);
+    scratchDirectory =
+        getString(
+            settings,
+            "ESPD_SCRATCH_DIR",
+            Paths.get(System.getProperty("java.io.tmpdir"), "espd-scratch").toString());
+    scratchMemoryDirectory = getString(settings, "ESPD_SCRATCH_RAM_DIR", "/dev/shm");
+    scratchMemoryFileBytes =
+        getLong(settings, "ESPD_SCRATCH_RAM_FILE_BYTES", 2L * 1024 * 1024, 0L);
+    scratchMemoryBytes = getLong(settings, "ESPD_SCRATCH_RAM_BYTES", 64L * 1024 * 1024, 0L);
+    dumpSegmentBytes = getLong(settings, "ESPD_DUMP_SEGMENT_BYTES", 64L * 1024 * 1024, 1L);
+    dumpSegmentSeconds = getLong(settings, "ESPD_DUMP_SEGMENT_SECONDS", 3600L, 1L);
+    dumpDedupEntries = getInt(settings, "ESPD_DUMP_DEDUP_ENTRIES", 65536, 1);
+    dumpSampleRate = getDouble(settings, "ESPD_DUMP_SAMPLE_RATE", 1.0, 0, 1);
+    codelistBlobEnabled = getBoolean(settings, "ESPD_CODELIST_BLOB", true);
+    evidenceBatchTimeout = getLong(settings, "ESPD_ECERTIS_BATCH_TIMEOUT", 30L, 1L);
+  }
+
+  public static ServerlessConfig getInstance() {
+    return INSTANCE;
+  }
+
+  /** Seconds clients and proxies may reuse a codelist response before revalidating it. */
+  public long codelistsMaxAge() {
+    return codelistsMaxAge;
+  }
+
+  /** Whether the shared Jackson mappers use Afterburner's generated (de)serializers. */
+  public boolean isJacksonAfterburnerEnabled() {
+    return jacksonAfterburnerEnabled;
+  }
+
+  /** Seconds an eCertis evidence entry is served without refreshing it. */
+  public long evidenceCacheTtl() {
+    return evidenceCacheTtl;
+  }
+
+  /** Seconds an eCertis evidence entry is served while it is refreshed in the background. */
+  public long evidenceCacheStaleTtl() {
+    return evidenceCacheStaleTtl;
+  }
+
+  /** Maximum number of cached eCertis evidence entries. */
+  public int evidenceCacheSize() {
+    return evidenceCacheSize;
+  }
+
+  /** Seconds a lookup waits for the shared eCertis fetch of its key. */
+  public long evidenceTimeout() {
+    return evidenceTimeout;
+  }
+
+  /** Maximum number of eCertis fetches running at the same time. */
+  public int evidenceMaxConcurrency() {
+    return evidenceMaxConcurrency;
+  }
+
+  /** Number of criteria a batch evidence request resolves at the same time. */
+  public int evidenceBatchParallelism() {
+    return evidenceBatchParallelism;
+  }
+
+  /** Number of documents a batch export renders at the same time. */
+  public int exportBatchParallelism() {
+    return exportBatchParallelism;
+  }
+
+  /** Number of files a bulk import processes at the same time. */
+  public int importBulkParallelism() {
+    return importBulkParallelism;
+  }
+
+  /** Maximum number of artefacts waiting to be dumped; further artefacts are dropped. */
+  public int dumpQueueSize() {
+    return dumpQueueSize;
+  }
+
+  /** Maximum number of bytes waiting to be dumped; further artefacts are dropped. */
+  public long dumpQueueBytes() {
+    return dumpQueueBytes;
+  }
+
+  /** Maximum number of artefacts the dump writer handles per batch. */
+  public int dumpBatchSize() {
+    return dumpBatchSize;
+  }
+
+  /** Maximum number of bytes of rendered exports kept in memory. */
+  public long exportCacheBytes() {
+    return exportCacheBytes;
+  }
+
+  /** Maximum number of bytes of rendered exports spilled to local disk; 0 disables spilling. */
+  public long exportCacheDiskBytes() {
+    return exportCacheDiskBytes;
+  }
+
+  /** Directory rendered exports are spilled to. */
+  public String exportCacheDirectory() {
+    return exportCacheDirectory;
+  }
+
+  /** Where eCertis evidence comes from: {@code live}, {@code standin} or {@code record}. */
+  public String evidenceSource() {
+    return evidenceSource;
+  }
+
+  /** Directory of eCertis fixtures, or {@code null} for the bundled ones. */
+  public String evidenceStandInDirectory() {
+    return evidenceStandInDirectory;
+  }
+
+  /** Median latency of the eCertis stand-in, in milliseconds. */
+  public long evidenceStandInLatencyMedian() {
+    return evidenceStandInLatencyMedian;
+  }
+
+  /** 99th percentile latency of the eCertis stand-in, in milliseconds. */
+  public long evidenceStandInLatencyP99() {
+    return evidenceStandInLatencyP99;
+  }
+
+  /** Share of stand-in lookups that fail, between 0 and 1. */
+  public double evidenceStandInErrorRate() {
+    return evidenceStandInErrorRate;
+  }
+
+  /** Share of stand-in lookups that hang like a slow-loris upstream, between 0 and 1. */
+  public double evidenceStandInSlowRate() {
+    return evidenceStandInSlowRate;
+  }
+
+  /** Seconds a hanging stand-in lookup takes before it answers. */
+  public long evidenceStandInSlowSeconds() {
+    return evidenceStandInSlowSeconds;
+  }
+
+  /** Maximum number of imports and exports an instance runs at the same time. */
+  public int admissionMaxConcurrent() {
+    return admissionMaxConcurrent;
+  }
+
+  /** Largest request body, by Content-Length, an import or export accepts. */
+  public long admissionMaxRequestBytes() {
+    return admissionMaxRequestBytes;
+  }
+
+  /** Estimated heap bytes an export needs per byte of its request body. */
+  public long admissionExportFactor() {
+    return admissionExportFactor;
+  }
+
+  /** Estimated heap bytes an import needs per byte of its request body. */
+  public long admissionImportFactor() {
+    return admissionImportFactor;
+  }
+
+  /** Share of the maximum heap that live data and admitted requests may take together. */
+  public double admissionHeapFraction() {
+    return admissionHeapFraction;
+  }
+
+  /** Seconds a client is asked to wait when a request is shed. */
+  public long admissionRetryAfter() {
+    return admissionRetryAfter;
+  }
+
+  /** Directory request-scoped scratch files are created in. */
+  public String scratchDirectory() {
+    return scratchDirectory;
+  }
+
+  /**
+   * RAM-backed directory small scratch files are created in, used only if it exists. The default,
+   * {@code /dev/shm}, exists on Linux hosts only.
+   */
+  public String scratchMemoryDirectory() {
+    return scratchMemoryDirectory;
+  }
+
+  /** Largest scratch file kept in the RAM-backed directory. */
+  public long scratchMemoryFileBytes() {
+    return scratchMemoryFileBytes;
+  }
+
+  /** Maximum number of bytes of scratch files in the RAM-backed directory at the same time. */
+  public long scratchMemoryBytes() {
+    return scratchMemoryBytes;
+  }
+
+  /** Compressed size after which the dump archive starts a new segment. */
+  public long dumpSegmentBytes() {
+    return dumpSegmentBytes;
+  }
+
+  /** Seconds after which the dump archive starts a new segment. */
+  public long dumpSegmentSeconds() {
+    return dumpSegmentSeconds;
+  }
+
+  /** Number of recent artefact digests the dump archive deduplicates against. */
+  public int dumpDedupEntries() {
+    return dumpDedupEntries;
+  }
+
+  /** Share of incoming artefacts that are dumped, between 0 and 1. */
+  public double dumpSampleRate() {
+    return dumpSampleRate;
+  }
+
+  /** Whether translated V2 codelists are generated once into a memory-mapped file at startup. */
+  public boolean isCodelistBlobEnabled() {
+    return codelistBlobEnabled;
+  }
+
+  /** Seconds a batch evidence request waits in total before unfinished criteria get a 504. */
+  public long evidenceBatchTimeout() {
+    return evidenceBatchTimeout;
+  }
+
+  private static boolean getBoolean(
+      Map<String, String> settings, String key, boolean defaultValue) {
+    String value = settings.get(key);
+    if (value == null || value.isBlank()) return defaultValue;
+    return Boolean.parseBoolean(value.trim());
+  }
+
+  private static String getString(Map<String, String> settings, String key, String defaultValue) {
+    String value = settings.get(key);
+    if (value == null || value.isBlank()) return defaultValue;
+    return value.trim();
+  }
+
+  private static double getDouble(
+      Map<String, String> settings,
+      String key,
+      double defaultValue,
+      double minValue,
+      double maxValue) {
+    double value = getDouble(settings, key, defaultValue);
+    if (value >= minValue && value <= maxValue) return value;
+    warnOutOfRange(key, value, defaultValue);
+    return defaultValue;
+  }
+
+  private static double getDouble(Map<String, String> settings, String key, double defaultValue) {
+    String value = settings.get(key);
+    if (value == null || value.isBlank()) return defaultValue;
+    try {
+      return Double.parseDouble(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private static int getInt(
+      Map<String, String> settings, String key, int defaultValue, int minValue) {
+    long value = getLong(settings, key, defaultValue, minValue);
+    if (value <= Integer.MAX_VALUE) return (int) value;
+    warnOutOfRange(key, value, defaultValue);
+    return defaultValue;
+  }
+
+  private static long getLong(
+      Map<String, String> settings, String key, long defaultValue, long minValue) {
+    long value = getLong(settings, key, defaultValue);
+    if (value >= minValue) return value;
+    warnOutOfRange(key, value, defaultValue);
+    return defaultValue;
+  }
+
+  private static long getLong(Map<String, String> settings, String key, long defaultValue) {
+    String value = settings.get(key);
+    if (value == null || value.isBlank()) return defaultValue;
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+
+  private static void warnOutOfRange(String key, Object value, Object defaultValue) {
+    LOGGER.warning(
+        String.format("%s=%s is out of range, using %s instead.", key, value, defaultValue));
+  }
+}
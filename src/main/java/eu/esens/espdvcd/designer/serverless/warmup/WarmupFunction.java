@@ -0,0 +1,20 @@
+package eu.esens.espdvcd.designer.serverless.warmup;
+
+import com.microsoft.azure.functions.ExecutionContext;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.TimerTrigger;
+
+/** Azure Functions with Timer Trigger. */
+public class WarmupFunction {
+  /**
+   * This function runs every ten minutes. It refills the criteria and codelist caches on the
+   * instance that picks it up and logs how long each phase took. The sample import and exports
+   * only run once per worker, when the first function class loads.
+   */
+  @FunctionName("WarmupFunction")
+  public void run(
+      @TimerTrigger(name = "timerInfo", schedule = "0 */10 * * * *") String timerInfo,
+      final ExecutionContext context) {
+    context.getLogger().info(WarmupRoutine.refresh().toString());
+  }
+}
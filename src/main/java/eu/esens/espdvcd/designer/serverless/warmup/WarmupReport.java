@@ -0,0 +1,62 @@
+package eu.esens.espdvcd.designer.serverless.warmup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Outcome and duration of each phase of a warmup run. */
+public final class WarmupReport {
+
+  private final List<Phase> phases = new ArrayList<>();
+
+  WarmupReport() {}
+
+  void add(Phase phase) {
+    phases.add(phase);
+  }
+
+  public List<Phase> getPhases() {
+    return Collections.unmodifiableList(phases);
+  }
+
+  public long getTotalMillis() {
+    return phases.stream().mapToLong(Phase::getMillis).sum();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("Warmup finished in ").append(getTotalMillis());
+    builder.append(" ms:");
+    for (Phase phase : phases) {
+      builder.append(' ').append(phase.getName()).append('=').append(phase.getMillis()).append("ms");
+      if (phase.getError() != null) builder.append(" (").append(phase.getError()).append(')');
+    }
+    return builder.toString();
+  }
+
+  /** A single timed warmup phase. */
+  public static final class Phase {
+    private final String name;
+    private final long millis;
+    private final String error;
+
+    Phase(String name, long millis, String error) {
+      this.name = name;
+      this.millis = millis;
+      this.error = error;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public long getMillis() {
+      return millis;
+    }
+
+    /** The failure of the phase, or {@code null} if it completed normally. */
+    public String getError() {
+      return error;
+    }
+  }
+}
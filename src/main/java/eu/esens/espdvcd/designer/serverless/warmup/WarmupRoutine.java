@@ -0,0 +1,180 @@
+package eu.esens.espdvcd.designer.serverless.warmup;
+
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.codelist.enums.internal.ContractingOperatorEnum;
+import eu.esens.espdvcd.designer.serverless.codelists.CodelistResponseCache;
+import eu.esens.espdvcd.designer.serverless.codelists.TranslatedCodelistBlob;
+import eu.esens.espdvcd.designer.serverless.criteria.CriteriaSnapshotStore;
+import eu.esens.espdvcd.designer.serverless.util.JacksonRegistry;
+import eu.esens.espdvcd.designer.serverless.util.ScratchSpace;
+import eu.esens.espdvcd.designer.service.CodelistsV1Service;
+import eu.esens.espdvcd.designer.service.CodelistsV2Service;
+import eu.esens.espdvcd.designer.service.CriteriaService;
+import eu.esens.espdvcd.designer.service.ExportESPDV1Service;
+import eu.esens.espdvcd.designer.service.ExportESPDV2Service;
+import eu.esens.espdvcd.designer.service.ImportESPDRequestService;
+import eu.esens.espdvcd.designer.service.ImportESPDResponseService;
+import eu.esens.espdvcd.designer.service.RegulatedCriteriaService;
+import eu.esens.espdvcd.designer.service.SelfContainedCriteriaService;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.model.ESPDRequest;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the heavy singletons of the designer backend (criteria services, codelists, JAXB
+ * contexts and validators) and runs a synthetic import and export of a bundled sample ESPD, so
+ * that the first user requests of a fresh worker do not pay for it. The sample is the V2 request
+ * fixture the benchmarks use, copied in by the build.
+ */
+public final class WarmupRoutine {
+
+  private static final Logger LOGGER = Logger.getLogger(WarmupRoutine.class.getName());
+  private static final String SAMPLE_REQUEST = "/warmup/espd-request-v2.xml";
+  private static final AtomicBoolean STARTED = new AtomicBoolean();
+  private static final AtomicReference<WarmupReport> LAST_REPORT = new AtomicReference<>();
+
+  private WarmupRoutine() {}
+
+  /**
+   * Starts a warmup run in the background, once per worker. Function classes call this when they
+   * are loaded, which is the earliest point the Java worker gives us.
+   */
+  public static void startOnce() {
+    if (!STARTED.compareAndSet(false, true)) return;
+    Thread thread = new Thread(() -> LOGGER.info(run().toString()), "espd-warmup");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /** The report of the most recent run, or {@code null} if none has finished yet. */
+  public static WarmupReport getLastReport() {
+    return LAST_REPORT.get();
+  }
+
+  /** Runs every warmup phase and returns how long each one took. */
+  public static WarmupReport run() {
+    WarmupReport report = new WarmupReport();
+    warmCaches(report);
+
+    time(
+        report,
+        "services",
+        () -> {
+          ImportESPDRequestService.getInstance();
+          ImportESPDResponseService.getInstance();
+          ExportESPDV1Service.getInstance();
+          ExportESPDV2Service.getInstance();
+        });
+
+    AtomicReference<ESPDRequest> imported = new AtomicReference<>();
+    time(report, "import", () -> imported.set(importSample()));
+
+    if (imported.get() != null) {
+      for (ExportType exportType : ExportType.values()) {
+        time(
+            report,
+            "export-" + exportType.name().toLowerCase(),
+            () ->
+                ExportESPDV2Service.getInstance()
+                    .exportESPDRequestAs(imported.get(), EULanguageCodeEnum.EN, exportType)
+                    .close());
+      }
+    } else {
+      report.add(new WarmupReport.Phase("export", 0, "skipped, the sample did not import"));
+      LOGGER.warning("Skipped the export warmup, the sample request did not import.");
+    }
+
+    // Last, so the phases that speed up the first imports and exports are not held up by it
+    time(report, "codelistBlob", () -> TranslatedCodelistBlob.getInstance().build());
+
+    LAST_REPORT.set(report);
+    return report;
+  }
+
+  /**
+   * Re-runs only the phases that refill caches, which are cheap once the services are loaded. The
+   * timer uses this; the import, the exports and the codelist blob only need to run once per
+   * worker.
+   */
+  public static WarmupReport refresh() {
+    WarmupReport report = new WarmupReport();
+    warmCaches(report);
+    return report;
+  }
+
+  private static void warmCaches(WarmupReport report) {
+    time(report, "jackson", () -> JacksonRegistry.getMapper(EDMVersion.V2));
+
+    time(
+        report,
+        "criteria",
+        () -> {
+          warmCriteria(RegulatedCriteriaService.getV1Instance());
+          warmCriteria(RegulatedCriteriaService.getV2Instance());
+          warmCriteria(SelfContainedCriteriaService.getInstance());
+        });
+
+    time(
+        report,
+        "codelists",
+        () -> {
+          CodelistResponseCache cache = CodelistResponseCache.getInstance();
+          if (cache.get("V1", null, null) == null)
+            cache.put("V1", null, null, CodelistsV1Service.getInstance().getAvailableCodelists());
+          if (cache.get("V2", null, null) == null)
+            cache.put("V2", null, null, CodelistsV2Service.getInstance().getAvailableCodelists());
+        });
+  }
+
+  private static void warmCriteria(CriteriaService criteriaService) throws Exception {
+    for (ContractingOperatorEnum contractingOperator : ContractingOperatorEnum.values()) {
+      CriteriaSnapshotStore.getInstance().getCriteria(criteriaService, contractingOperator);
+    }
+    CriteriaSnapshotStore.getInstance().prepareFilteredCriteria(criteriaService);
+    CriteriaSnapshotStore.getInstance().prepareCriteriaSearch(criteriaService);
+  }
+
+  private static ESPDRequest importSample() throws Exception {
+    byte[] xml;
+    try (InputStream in = WarmupRoutine.class.getResourceAsStream(SAMPLE_REQUEST)) {
+      if (in == null) throw new IllegalStateException(SAMPLE_REQUEST + " is not on the classpath");
+      xml = in.readAllBytes();
+    }
+    try (ScratchSpace.ScratchFile sample = ScratchSpace.getInstance().create(".xml", xml.length)) {
+      try (OutputStream out = sample.newOutputStream()) {
+        out.write(xml);
+      }
+      ESPDRequest request =
+          (ESPDRequest)
+              ImportESPDRequestService.getInstance()
+                  .importESPDFile(sample.toFile(), ContractingOperatorEnum.CONTRACTING_ENTITY);
+      if (request == null) throw new IllegalStateException(SAMPLE_REQUEST + " imported as nothing");
+      return request;
+    }
+  }
+
+  private static void time(WarmupReport report, String phase, WarmupStep step) {
+    long start = System.nanoTime();
+    String error = null;
+    try {
+      step.run();
+    } catch (Exception | LinkageError e) {
+      // A failing phase has still loaded most of what it touched, so carry on with the rest
+      error = e.getClass().getSimpleName() + ": " + e.getMessage();
+      LOGGER.log(Level.WARNING, "Warmup phase " + phase + " failed.", e);
+    }
+    report.add(new WarmupReport.Phase(phase, (System.nanoTime() - start) / 1_000_000, error));
+  }
+
+  @FunctionalInterface
+  private interface WarmupStep {
+    void run() throws Exception;
+  }
+}
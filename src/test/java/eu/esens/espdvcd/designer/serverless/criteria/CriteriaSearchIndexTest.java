@@ -0,0 +1,33 @@
+package eu.esens.espdvcd.designer.serverless.criteria;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CriteriaSearchIndexTest {
+
+  @Test
+  void foldsQueriesIntoDistinctTerms() {
+    assertEquals(
+        List.of("bankruptcy", "fraud", "art", "57"),
+        List.copyOf(CriteriaSearchIndex.queryTerms("Bankruptcy, FRAUD! fraud (Art. 57)")));
+  }
+
+  @Test
+  void removesAccentsInEveryScript() {
+    // an accented Latin word and a Greek word with a tonos
+    String query = "R\u00e8glement \u03a0\u03c4\u03ce\u03c7\u03b5\u03c5\u03c3\u03b7";
+    assertEquals(
+        List.of("reglement", "\u03c0\u03c4\u03c9\u03c7\u03b5\u03c5\u03c3\u03b7"),
+        List.copyOf(CriteriaSearchIndex.queryTerms(query)));
+  }
+
+  @Test
+  void findsNoTermsInPunctuation() {
+    assertTrue(CriteriaSearchIndex.queryTerms("!!!").isEmpty());
+    assertTrue(CriteriaSearchIndex.queryTerms("  ").isEmpty());
+  }
+}
@@ -0,0 +1,221 @@
+package eu.esens.espdvcd.designer.serverless.export;
+
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import eu.esens.espdvcd.designer.typeEnum.ExportType;
+import eu.esens.espdvcd.schema.enums.EDMVersion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportResultCacheTest {
+
+  private static final String DIGEST = ExportResultCache.digest(bytes("{\"id\":1}"));
+
+  @TempDir Path spillDirectory;
+
+  private final AtomicInteger renders = new AtomicInteger();
+
+  @Test
+  void keysCoverEveryParameterOfTheExport() throws Exception {
+    ExportResultCache cache = new ExportResultCache(1 << 20, 0, spillDirectory);
+    String otherDigest = ExportResultCache.digest(bytes("{\"id\":2}"));
+
+    assertEquals("a", get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "a"));
+    assertEquals("b", get(cache, otherDigest, EDMVersion.V2, false, ExportType.PDF, "b"));
+    assertEquals("c", get(cache, DIGEST, EDMVersion.V1, false, ExportType.PDF, "c"));
+    assertEquals("d", get(cache, DIGEST, EDMVersion.V2, true, ExportType.PDF, "d"));
+    assertEquals("e", get(cache, DIGEST, EDMVersion.V2, false, ExportType.XML, "e"));
+    assertEquals(
+        "f",
+        string(
+            cache.get(
+                DIGEST, EDMVersion.V2, false, ExportType.PDF, EULanguageCodeEnum.DE, render("f"))));
+    assertEquals(6, renders.get());
+
+    assertEquals("a", get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "again"));
+    assertEquals(6, renders.get());
+  }
+
+  @Test
+  void concurrentExportsOfTheSameDocumentShareOneRender() throws Exception {
+    ExportResultCache cache = new ExportResultCache(1 << 20, 0, spillDirectory);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch finish = new CountDownLatch(1);
+    ExportResultCache.Renderer slow =
+        () -> {
+          renders.incrementAndGet();
+          started.countDown();
+          await(finish);
+          return bytes("shared");
+        };
+    ExecutorService callers = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> exports = new ArrayList<>();
+      exports.add(callers.submit(() -> getEnglishPdf(cache, slow)));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      for (int i = 0; i < 3; i++) exports.add(callers.submit(() -> getEnglishPdf(cache, slow)));
+      // Give the other callers time to find the render in flight
+      Thread.sleep(100);
+      finish.countDown();
+      for (Future<byte[]> export : exports) {
+        assertEquals("shared", string(export.get(5, TimeUnit.SECONDS)));
+      }
+    } finally {
+      finish.countDown();
+      callers.shutdownNow();
+    }
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  void failedRendersAreNotCached() throws Exception {
+    ExportResultCache cache = new ExportResultCache(1 << 20, 0, spillDirectory);
+
+    assertThrows(
+        IOException.class,
+        () ->
+            getEnglishPdf(
+                cache,
+                () -> {
+                  renders.incrementAndGet();
+                  throw new IOException("broken");
+                }));
+    assertEquals("fixed", string(getEnglishPdf(cache, render("fixed"))));
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  void refusedRendersAreNotHandedToWaitingCallers() throws Exception {
+    ExportResultCache cache = new ExportResultCache(1 << 20, 0, spillDirectory);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch refuse = new CountDownLatch(1);
+    ExecutorService callers = Executors.newFixedThreadPool(2);
+    try {
+      Future<byte[]> refused =
+          callers.submit(
+              () ->
+                  getEnglishPdf(
+                      cache,
+                      () -> {
+                        started.countDown();
+                        await(refuse);
+                        throw new NotAdmittedException(null);
+                      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+      Future<byte[]> waiting = callers.submit(() -> getEnglishPdf(cache, render("own")));
+      Thread.sleep(100);
+      refuse.countDown();
+
+      Exception failure = assertThrows(Exception.class, () -> refused.get(5, TimeUnit.SECONDS));
+      assertTrue(failure.getCause() instanceof NotAdmittedException);
+      assertEquals("own", string(waiting.get(5, TimeUnit.SECONDS)));
+    } finally {
+      refuse.countDown();
+      callers.shutdownNow();
+    }
+  }
+
+  @Test
+  void evictsTheLeastRecentlyUsedResultFromMemory() throws Exception {
+    ExportResultCache cache = new ExportResultCache(10, 0, spillDirectory);
+
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "pdf1");
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.XML, "xml1");
+    // The PDF is used again, so the XML is the eldest when the HTML needs room
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "pdf2");
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.HTML, "htm1");
+    assertEquals(3, renders.get());
+
+    assertEquals("pdf1", get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "pdf3"));
+    assertEquals("xml2", get(cache, DIGEST, EDMVersion.V2, false, ExportType.XML, "xml2"));
+    assertEquals(4, renders.get());
+  }
+
+  @Test
+  void spillsEvictedResultsToDiskAndReloadsThem() throws Exception {
+    ExportResultCache cache = new ExportResultCache(8, 1 << 20, spillDirectory);
+
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "pdf-1");
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.XML, "xml-1");
+    assertEquals(1, spilledFiles());
+
+    assertEquals("pdf-1", get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "pdf-2"));
+    assertEquals("xml-1", get(cache, DIGEST, EDMVersion.V2, false, ExportType.XML, "xml-2"));
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  void spillsResultsTooLargeForMemoryStraightToDisk() throws Exception {
+    ExportResultCache cache = new ExportResultCache(4, 1 << 20, spillDirectory);
+
+    get(cache, DIGEST, EDMVersion.V2, false, ExportType.PDF, "large-1");
+    assertEquals(1, spilledFiles());
+    assertArrayEquals(bytes("large-1"), getEnglishPdf(cache, render("large-2")));
+    assertEquals(1, renders.get());
+  }
+
+  private String get(
+      ExportResultCache cache,
+      String digest,
+      EDMVersion version,
+      boolean isResponse,
+      ExportType exportType,
+      String content)
+      throws Exception {
+    return string(
+        cache.get(digest, version, isResponse, exportType, EULanguageCodeEnum.EN, render(content)));
+  }
+
+  private static byte[] getEnglishPdf(ExportResultCache cache, ExportResultCache.Renderer renderer)
+      throws Exception {
+    return cache.get(DIGEST, EDMVersion.V2, false, ExportType.PDF, EULanguageCodeEnum.EN, renderer);
+  }
+
+  private ExportResultCache.Renderer render(String content) {
+    return () -> {
+      renders.incrementAndGet();
+      return bytes(content);
+    };
+  }
+
+  /** Waits inside a render, which may only throw the checked exceptions of an export. */
+  private static void await(CountDownLatch latch) throws IOException {
+    try {
+      if (!latch.await(5, TimeUnit.SECONDS)) throw new IOException("The test timed out.");
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private long spilledFiles() throws IOException {
+    try (Stream<Path> files = Files.list(spillDirectory)) {
+      return files.filter(file -> file.toString().endsWith(".bin")).count();
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] bytes) {
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
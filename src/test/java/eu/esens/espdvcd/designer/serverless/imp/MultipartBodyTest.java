@@ -0,0 +1,115 @@
+package eu.esens.espdvcd.designer.serverless.imp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultipartBodyTest {
+
+  private static final String CONTENT_TYPE = "multipart/form-data; boundary=XyZ";
+
+  @Test
+  void parsesEveryPartWithoutTheDelimiterCrlf() throws IOException {
+    byte[] body =
+        bytes(
+            "--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"espd.xml\"\r\n"
+                + "Content-Type: text/xml\r\n"
+                + "\r\n"
+                + "<ESPD/>\r\n"
+                + "--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"comment\"\r\n"
+                + "\r\n"
+                + "hello\r\n"
+                + "--XyZ--\r\n");
+
+    List<MultipartBody.Part> parts = MultipartBody.parse(body, CONTENT_TYPE);
+
+    assertEquals(2, parts.size());
+    assertEquals("espd.xml", parts.get(0).getFileName());
+    assertTrue(parts.get(0).getHeaders().contains("Content-Type: text/xml"));
+    assertEquals("<ESPD/>", content(parts.get(0)));
+    assertEquals(7, parts.get(0).getLength());
+    assertNull(parts.get(1).getFileName());
+    assertEquals("hello", content(parts.get(1)));
+  }
+
+  @Test
+  void keepsLineBreaksInsideTheContent() throws IOException {
+    byte[] body =
+        bytes(
+            "--XyZ\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=a.xml\r\n"
+                + "\r\n"
+                + "line one\r\n\r\nline two\r\n\r\n"
+                + "--XyZ--");
+
+    MultipartBody.Part part = MultipartBody.firstPart(body, CONTENT_TYPE);
+
+    assertEquals("a.xml", part.getFileName());
+    assertEquals("line one\r\n\r\nline two\r\n", content(part));
+  }
+
+  @Test
+  void acceptsAQuotedBoundaryAmongOtherParameters() throws IOException {
+    byte[] body = bytes("--a b\r\nContent-Disposition: form-data; name=x\r\n\r\n1\r\n--a b--");
+
+    List<MultipartBody.Part> parts =
+        MultipartBody.parse(body, "multipart/form-data; charset=UTF-8; Boundary=\"a b\"");
+
+    assertEquals(1, parts.size());
+    assertEquals("1", content(parts.get(0)));
+  }
+
+  @Test
+  void returnsNoPartsWhenTheBoundaryNeverOccurs() throws IOException {
+    assertTrue(MultipartBody.parse(bytes("no parts here"), CONTENT_TYPE).isEmpty());
+    assertNull(MultipartBody.firstPart(bytes("no parts here"), CONTENT_TYPE));
+  }
+
+  @Test
+  void rejectsAContentTypeWithoutBoundary() {
+    assertThrows(
+        IOException.class, () -> MultipartBody.parse(bytes("--XyZ--"), "multipart/form-data"));
+  }
+
+  @Test
+  void rejectsUnterminatedHeaders() {
+    assertThrows(
+        IOException.class,
+        () -> MultipartBody.parse(bytes("--XyZ\r\nContent-Disposition: x\r\n"), CONTENT_TYPE));
+  }
+
+  @Test
+  void rejectsAMissingClosingBoundary() {
+    assertThrows(
+        IOException.class,
+        () ->
+            MultipartBody.parse(
+                bytes("--XyZ\r\nContent-Disposition: form-data; name=x\r\n\r\ntruncated"),
+                CONTENT_TYPE));
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  private static String content(MultipartBody.Part part) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    part.writeTo(out);
+    assertEquals(out.toString(StandardCharsets.ISO_8859_1), readAll(part));
+    return out.toString(StandardCharsets.ISO_8859_1);
+  }
+
+  private static String readAll(MultipartBody.Part part) throws IOException {
+    return new String(part.openStream().readAllBytes(), StandardCharsets.ISO_8859_1);
+  }
+}
@@ -0,0 +1,97 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ArtefactArchiveTest {
+
+  private static final ZonedDateTime RECEIVED_AT = ZonedDateTime.parse("2026-03-01T10:00:00Z");
+
+  @TempDir Path directory;
+
+  @Test
+  void readsBackWhatWasAppended() throws Exception {
+    ArtefactArchive archive = new ArtefactArchive(directory, 1 << 20, 60_000, 16);
+    byte[] first = bytes("<ESPDRequest>1</ESPDRequest>");
+    byte[] second = bytes("<ESPDResponse>2</ESPDResponse>");
+
+    assertTrue(archive.append("request", first, RECEIVED_AT));
+    assertTrue(archive.append("response", second, RECEIVED_AT));
+
+    assertArrayEquals(first, archive.read(digest(first)));
+    assertArrayEquals(second, archive.read(digest(second)));
+    assertNull(archive.read(digest(bytes("never archived"))));
+    archive.close();
+  }
+
+  @Test
+  void storesIdenticalContentOnceButIndexesEveryReceipt() throws Exception {
+    ArtefactArchive archive = new ArtefactArchive(directory, 1 << 20, 60_000, 16);
+    byte[] content = bytes("<ESPDRequest/>");
+
+    assertTrue(archive.append("request", content, RECEIVED_AT));
+    assertFalse(archive.append("request", content, RECEIVED_AT.plusSeconds(1)));
+    archive.close();
+
+    List<Path> indexes = files(".idx");
+    assertEquals(1, indexes.size());
+    assertEquals(2, Files.readAllLines(indexes.get(0)).size());
+  }
+
+  @Test
+  void findsArtefactsOfEarlierInstancesThroughTheIndexes() throws Exception {
+    byte[] content = bytes("<ESPDResponse/>");
+    ArtefactArchive writer = new ArtefactArchive(directory, 1 << 20, 60_000, 16);
+    writer.append("response", content, RECEIVED_AT);
+    writer.close();
+
+    ArtefactArchive reader = new ArtefactArchive(directory, 1 << 20, 60_000, 16);
+    assertArrayEquals(content, reader.read(digest(content)));
+  }
+
+  @Test
+  void namesSegmentsInUtcSoThatNameOrderIsAgeOrder() throws Exception {
+    // Daylight saving time ends in between: the later receipt has the earlier local time
+    ArtefactArchive archive = new ArtefactArchive(directory, 1 << 20, 0, 16);
+    archive.append("request", bytes("first"), ZonedDateTime.parse("2026-10-25T02:30+02:00"));
+    archive.append("request", bytes("second"), ZonedDateTime.parse("2026-10-25T02:10+01:00"));
+    archive.close();
+
+    List<Path> segments = files(".gz");
+    assertEquals(2, segments.size());
+    assertTrue(segments.get(0).getFileName().toString().startsWith("20261025-003000-"));
+    assertTrue(segments.get(1).getFileName().toString().startsWith("20261025-011000-"));
+  }
+
+  private List<Path> files(String extension) throws IOException {
+    try (Stream<Path> files = Files.list(directory)) {
+      return files
+          .filter(file -> file.toString().endsWith(extension))
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static byte[] bytes(String text) {
+    return text.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String digest(byte[] content) {
+    return Digests.sha256Hex(content);
+  }
+}
@@ -0,0 +1,225 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import com.microsoft.azure.functions.HttpMethod;
+import com.microsoft.azure.functions.HttpRequestMessage;
+import com.microsoft.azure.functions.HttpResponseMessage;
+import com.microsoft.azure.functions.HttpStatus;
+import com.microsoft.azure.functions.HttpStatusType;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CachedResponseTest {
+
+  /** Large and repetitive enough to have a gzip variant. */
+  private static final String JSON = "[" + "{\"id\":\"criterion\"},".repeat(200) + "{}]";
+
+  private final CachedResponse cached = json(JSON);
+
+  @Test
+  void servesTheIdentityBodyWithItsEtag() {
+    HttpResponseMessage response = cached.toResponse(request());
+
+    assertEquals(200, response.getStatusCode());
+    assertArrayEquals(cached.getBody(), (byte[]) response.getBody());
+    assertEquals(cached.getEtag(), response.getHeader("ETag"));
+    assertEquals("no-cache", response.getHeader("Cache-Control"));
+    assertNull(response.getHeader("Content-Encoding"));
+  }
+
+  @Test
+  void givesEachEncodingAnEtagOfItsOwn() {
+    HttpResponseMessage response = cached.toResponse(request("Accept-Encoding", "gzip"));
+
+    assertEquals("gzip", response.getHeader("Content-Encoding"));
+    assertEquals(gzipEtag(), response.getHeader("ETag"));
+    assertNotEquals(cached.getEtag(), gzipEtag());
+  }
+
+  @Test
+  void answersAMatchingEtagWithNotModified() {
+    HttpResponseMessage response = cached.toResponse(request("If-None-Match", cached.getEtag()));
+
+    assertEquals(304, response.getStatusCode());
+    assertNull(response.getBody());
+    assertEquals(cached.getEtag(), response.getHeader("ETag"));
+    assertEquals("no-cache", response.getHeader("Cache-Control"));
+  }
+
+  @Test
+  void comparesEtagsWeakly() {
+    assertEquals(
+        304, cached.toResponse(request("If-None-Match", "W/" + cached.getEtag())).getStatusCode());
+  }
+
+  @Test
+  void matchesTheWildcard() {
+    assertEquals(304, cached.toResponse(request("If-None-Match", "*")).getStatusCode());
+  }
+
+  @Test
+  void looksThroughEtagLists() {
+    String others = "\"stale\", W/\"older\"";
+    assertEquals(
+        304,
+        cached
+            .toResponse(request("If-None-Match", others + " ," + cached.getEtag()))
+            .getStatusCode());
+    assertEquals(200, cached.toResponse(request("If-None-Match", others)).getStatusCode());
+    assertEquals(200, cached.toResponse(request("If-None-Match", " ")).getStatusCode());
+  }
+
+  @Test
+  void letsTheEtagsOfAllEncodingsValidateEachOther() {
+    assertEquals(
+        304,
+        cached
+            .toResponse(request("If-None-Match", gzipEtag(), "Accept-Encoding", "identity"))
+            .getStatusCode());
+    HttpResponseMessage response =
+        cached.toResponse(request("If-None-Match", cached.getEtag(), "Accept-Encoding", "gzip"));
+    assertEquals(304, response.getStatusCode());
+    assertEquals(gzipEtag(), response.getHeader("ETag"));
+  }
+
+  @Test
+  void doesNotMatchTheEtagOfOtherContent() {
+    String otherEtag = json(JSON.replace("criterion", "requirement")).getEtag();
+    assertEquals(200, cached.toResponse(request("If-None-Match", otherEtag)).getStatusCode());
+  }
+
+  @Test
+  void variesByAcceptEncodingOnlyWhenThereAreVariants() {
+    assertEquals("Accept-Encoding", cached.toResponse(request()).getHeader("Vary"));
+    assertEquals(
+        "Accept-Encoding",
+        cached.toResponse(request("If-None-Match", cached.getEtag())).getHeader("Vary"));
+    // Too small to be compressed
+    assertNull(json("{}").toResponse(request("Accept-Encoding", "gzip")).getHeader("Vary"));
+  }
+
+  private String gzipEtag() {
+    return cached.toResponse(request("Accept-Encoding", "gzip")).getHeader("ETag");
+  }
+
+  private static CachedResponse json(String json) {
+    try {
+      return CachedResponse.json(json, "no-cache");
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** A GET request with the given header names and values, in lower case as the worker has them. */
+  private static HttpRequestMessage<Optional<String>> request(String... headers) {
+    Map<String, String> headerMap = new HashMap<>();
+    for (int i = 0; i < headers.length; i += 2) {
+      headerMap.put(headers[i].toLowerCase(), headers[i + 1]);
+    }
+    return new HttpRequestMessage<>() {
+      @Override
+      public URI getUri() {
+        return URI.create("http://localhost/api/v2/criteria");
+      }
+
+      @Override
+      public HttpMethod getHttpMethod() {
+        return HttpMethod.GET;
+      }
+
+      @Override
+      public Map<String, String> getHeaders() {
+        return headerMap;
+      }
+
+      @Override
+      public Map<String, String> getQueryParameters() {
+        return new HashMap<>();
+      }
+
+      @Override
+      public Optional<String> getBody() {
+        return Optional.empty();
+      }
+
+      @Override
+      public HttpResponseMessage.Builder createResponseBuilder(HttpStatus status) {
+        return new Response.Builder(status);
+      }
+
+      @Override
+      public HttpResponseMessage.Builder createResponseBuilder(HttpStatusType status) {
+        return new Response.Builder(status);
+      }
+    };
+  }
+
+  private static final class Response implements HttpResponseMessage {
+    private final HttpStatusType status;
+    private final Map<String, String> headers;
+    private final Object body;
+
+    private Response(HttpStatusType status, Map<String, String> headers, Object body) {
+      this.status = status;
+      this.headers = headers;
+      this.body = body;
+    }
+
+    @Override
+    public HttpStatusType getStatus() {
+      return status;
+    }
+
+    @Override
+    public String getHeader(String name) {
+      return headers.get(name);
+    }
+
+    @Override
+    public Object getBody() {
+      return body;
+    }
+
+    private static final class Builder implements HttpResponseMessage.Builder {
+      private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+      private HttpStatusType status;
+      private Object body;
+
+      private Builder(HttpStatusType status) {
+        this.status = status;
+      }
+
+      @Override
+      public HttpResponseMessage.Builder status(HttpStatusType status) {
+        this.status = status;
+        return this;
+      }
+
+      @Override
+      public HttpResponseMessage.Builder header(String name, String value) {
+        headers.put(name, value);
+        return this;
+      }
+
+      @Override
+      public HttpResponseMessage.Builder body(Object body) {
+        this.body = body;
+        return this;
+      }
+
+      @Override
+      public HttpResponseMessage build() {
+        return new Response(status, headers, body);
+      }
+    }
+  }
+}
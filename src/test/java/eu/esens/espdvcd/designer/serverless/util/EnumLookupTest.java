@@ -0,0 +1,33 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import eu.esens.espdvcd.codelist.enums.EULanguageCodeEnum;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class EnumLookupTest {
+
+  @Test
+  void parsesNamesIgnoringCase() {
+    assertEquals(EULanguageCodeEnum.EN, EnumLookup.parse(EULanguageCodeEnum.class, "en"));
+    assertEquals(EULanguageCodeEnum.EN, EnumLookup.parse(EULanguageCodeEnum.class, "EN"));
+  }
+
+  @Test
+  void returnsNullForUnknownNames() {
+    assertNull(EnumLookup.parse(EULanguageCodeEnum.class, "klingon"));
+    assertNull(EnumLookup.parse(EULanguageCodeEnum.class, ""));
+    assertNull(EnumLookup.parse(EULanguageCodeEnum.class, null));
+  }
+
+  @Test
+  void returnsTheFallbackForUnknownNames() {
+    assertEquals(
+        EULanguageCodeEnum.EN,
+        EnumLookup.parse(EULanguageCodeEnum.class, "klingon", EULanguageCodeEnum.EN));
+    assertEquals(
+        EULanguageCodeEnum.DE,
+        EnumLookup.parse(EULanguageCodeEnum.class, "de", EULanguageCodeEnum.EN));
+  }
+}
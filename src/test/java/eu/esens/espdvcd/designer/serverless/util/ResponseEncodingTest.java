@@ -0,0 +1,53 @@
+package eu.esens.espdvcd.designer.serverless.util;
+
+import org.junit.jupiter.api.Test;
+
+import static eu.esens.espdvcd.designer.serverless.util.ResponseEncoding.BROTLI;
+import static eu.esens.espdvcd.designer.serverless.util.ResponseEncoding.GZIP;
+import static eu.esens.espdvcd.designer.serverless.util.ResponseEncoding.IDENTITY;
+import static eu.esens.espdvcd.designer.serverless.util.ResponseEncoding.negotiate;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ResponseEncodingTest {
+
+  @Test
+  void servesIdentityWithoutAcceptEncoding() {
+    assertEquals(IDENTITY, negotiate(null, true, true));
+    assertEquals(IDENTITY, negotiate(" ", true, true));
+    assertEquals(IDENTITY, negotiate("deflate", true, true));
+  }
+
+  @Test
+  void prefersBrotliThenGzip() {
+    assertEquals(BROTLI, negotiate("gzip, deflate, br", true, true));
+    assertEquals(GZIP, negotiate("gzip, deflate, br", false, true));
+    assertEquals(IDENTITY, negotiate("gzip, deflate, br", false, false));
+  }
+
+  @Test
+  void matchesCodingsCaseInsensitively() {
+    assertEquals(BROTLI, negotiate("BR", true, true));
+    assertEquals(GZIP, negotiate("x-gzip", true, true));
+  }
+
+  @Test
+  void excludesCodingsWithAZeroQuality() {
+    assertEquals(GZIP, negotiate("br;q=0, gzip;q=0.5", true, true));
+    assertEquals(IDENTITY, negotiate("gzip; q=0.000", false, true));
+    assertEquals(IDENTITY, negotiate("gzip;q=oops", false, true));
+  }
+
+  @Test
+  void keepsAnExclusionWhenTheCodingIsNamedAgain() {
+    assertEquals(IDENTITY, negotiate("gzip;q=0, gzip", false, true));
+    assertEquals(GZIP, negotiate("br;q=0, br;q=1, gzip", true, true));
+  }
+
+  @Test
+  void appliesTheWildcardToUnnamedCodingsOnly() {
+    assertEquals(BROTLI, negotiate("*", true, true));
+    assertEquals(GZIP, negotiate("br;q=0, *", true, true));
+    assertEquals(BROTLI, negotiate("br, *;q=0", true, true));
+    assertEquals(IDENTITY, negotiate("*;q=0", true, true));
+  }
+}